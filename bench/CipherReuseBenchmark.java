@@ -0,0 +1,96 @@
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Vergleicht je Aufruf erzeugte Cipher-Instanzen mit den wiederverwendeten des EncryptionManagers
+ *
+ * Der Weg "je Aufruf" bildet die Einzeloperationen so nach, wie sie vor der Wiederverwendung
+ * aussahen: Cipher.getInstance, init und doFinal bei jedem Aufruf. Dem stehen
+ * {@link EncryptionManager#encrypt(byte[])} (AES-CBC) und
+ * {@link EncryptionManager#encryptRecord(byte[], byte[])} (AES-GCM) gegenüber, die je Thread
+ * eine Instanz behalten und nur neu initialisieren. Beide Wege liefern dasselbe Format.
+ *
+ * Aufruf: java CipherReuseBenchmark [Aufrufe je Runde] [Klartext in Bytes] [Runden]
+ */
+public class CipherReuseBenchmark {
+    private static final SecureRandom random = new SecureRandom();
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        SecretKey key = new SecretKeySpec(keyBytes, "AES");
+        EncryptionManager manager = new EncryptionManager();
+        manager.setEncryptionKey(key);
+
+        byte[] plaintext = new byte[size];
+        random.nextBytes(plaintext);
+        byte[] associatedData = "eintrag".getBytes("UTF-8");
+        System.out.printf("%d Aufrufe mit %d Bytes je Runde, %d Runden%n", count, size, rounds);
+
+        double cbcPerCall = PasswordGeneratorBenchmark.measure("AES-CBC je Aufruf", count, rounds,
+                repeat(count, () -> sink += encryptPerCall(key, plaintext).length()));
+        double cbcReused = PasswordGeneratorBenchmark.measure("AES-CBC wiederverwendet", count, rounds,
+                repeat(count, () -> sink += manager.encrypt(plaintext).length()));
+        double gcmPerCall = PasswordGeneratorBenchmark.measure("AES-GCM je Aufruf", count, rounds,
+                repeat(count, () -> sink += encryptRecordPerCall(key, plaintext, associatedData).length));
+        double gcmReused = PasswordGeneratorBenchmark.measure("AES-GCM wiederverwendet", count, rounds,
+                repeat(count, () -> sink += manager.encryptRecord(plaintext, associatedData).length));
+
+        System.out.printf("Beschleunigung durch Wiederverwendung: AES-CBC %.2fx, AES-GCM %.2fx%n",
+                cbcPerCall / cbcReused, gcmPerCall / gcmReused);
+        System.out.println("Prüfsumme: " + sink);
+        manager.clearKey();
+    }
+
+    private static String encryptPerCall(SecretKey key, byte[] plaintext) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, random);
+
+        byte[] iv = cipher.getIV();
+        byte[] encryptedData = cipher.doFinal(plaintext);
+        byte[] combined = new byte[iv.length + encryptedData.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    private static byte[] encryptRecordPerCall(SecretKey key, byte[] plaintext, byte[] associatedData)
+            throws Exception {
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(associatedData);
+
+        byte[] record = new byte[nonce.length + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(nonce, 0, record, 0, nonce.length);
+        cipher.doFinal(plaintext, 0, plaintext.length, record, nonce.length);
+        return record;
+    }
+
+    private static Runnable repeat(int count, Operation operation) {
+        return () -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    operation.run();
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
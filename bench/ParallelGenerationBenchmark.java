@@ -0,0 +1,57 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Misst, wie {@link PasswordGenerator#generateBatchParallel} mit der Zahl der Threads skaliert
+ *
+ * Die parallele Generierung läuft jeweils in einem eigenen ForkJoinPool mit 1, 2, 4, ...
+ * Threads bis zur Zahl der Prozessoren; ein paralleler Stream nutzt den Pool des
+ * aufrufenden Worker-Threads. Zum Vergleich wird {@link PasswordGenerator#generateBatch}
+ * auf einem Thread gemessen. Ausgegeben werden die Zeit je Passwort und die
+ * Beschleunigung gegenüber einem Thread.
+ *
+ * Aufruf: java ParallelGenerationBenchmark [Passwörter je Runde] [Länge] [Runden]
+ */
+public class ParallelGenerationBenchmark {
+    private static long sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        PasswordGenerator.Policy policy = new PasswordGenerator.Policy(true, true, true, true, length);
+        System.out.printf("%d Passwörter der Länge %d je Runde, %d Runden, %d Prozessoren%n",
+                count, length, rounds, processors);
+
+        PasswordGeneratorBenchmark.measure("generateBatch", count, rounds,
+                () -> consume(PasswordGenerator.generateBatch(policy, count)));
+
+        double singleThread = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                double nanos = PasswordGeneratorBenchmark.measure("generateBatchParallel, " + threads + " Threads",
+                        count, rounds, () -> consume(pool.submit(
+                                () -> PasswordGenerator.generateBatchParallel(policy, count)).join()));
+                if (threads == 1) {
+                    singleThread = nanos;
+                }
+                System.out.printf("%-34s Beschleunigung %.2fx%n", "", singleThread / nanos);
+            } finally {
+                pool.shutdown();
+            }
+            if (threads == processors) {
+                break;
+            }
+        }
+        System.out.println("Prüfsumme: " + sink);
+    }
+
+    private static void consume(List<String> passwords) {
+        if (passwords.size() > 0) {
+            sink += passwords.size() + passwords.get(passwords.size() - 1).charAt(0);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vergleicht einzelnes und gebündeltes Generieren von Passwörtern
+ *
+ * Gemessen wird dieselbe Anzahl Passwörter einmal über wiederholte Aufrufe von
+ * {@link PasswordGenerator#generatePassword}, die jedes Mal eine Richtlinie anlegen und
+ * Zufallsbytes beziehen, einmal über {@link PasswordGenerator#generateBatch(PasswordGenerator.Policy, int)}
+ * und einmal über die Variante mit Empfänger, die keine Strings erzeugt. Nach dem Aufwärmen
+ * wird jede Variante mehrfach gemessen und die schnellste und mittlere Runde ausgegeben.
+ *
+ * Aufruf: java PasswordGeneratorBenchmark [Passwörter je Runde] [Länge] [Runden]
+ */
+public class PasswordGeneratorBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+
+    // Verhindert, dass der JIT-Compiler die Ergebnisse als unbenutzt wegoptimiert
+    private static long sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        PasswordGenerator.Policy policy = new PasswordGenerator.Policy(true, true, true, true, length);
+        System.out.printf("%d Passwörter der Länge %d je Runde, %d Runden%n", count, length, rounds);
+
+        double single = measure("generatePassword einzeln", count, rounds, () -> {
+            for (int i = 0; i < count; i++) {
+                sink += PasswordGenerator.generatePassword(true, true, true, true, length).charAt(0);
+            }
+        });
+        double batch = measure("generateBatch (Liste)", count, rounds, () -> {
+            for (String password : PasswordGenerator.generateBatch(policy, count)) {
+                sink += password.charAt(0);
+            }
+        });
+        double batchSink = measure("generateBatch (Empfänger)", count, rounds,
+                () -> PasswordGenerator.generateBatch(policy, count, buffer -> sink += buffer[0]));
+
+        System.out.printf("Beschleunigung gegenüber einzeln: Liste %.1fx, Empfänger %.1fx%n",
+                single / batch, single / batchSink);
+        System.out.println("Prüfsumme: " + sink);
+    }
+
+    /**
+     * Misst eine Runde aus count Vorgängen mehrfach, gibt den Median je Vorgang in Nanosekunden zurück
+     */
+    static double measure(String name, int count, int rounds, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+
+        List<Long> durations = new ArrayList<>(rounds);
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            round.run();
+            durations.add(System.nanoTime() - start);
+        }
+
+        long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        double best = sorted[0] / (double) count;
+        double median = sorted[sorted.length / 2] / (double) count;
+        System.out.printf("%-34s bestes %8.1f ns, Median %8.1f ns je Vorgang%n", name, best, median);
+        return median;
+    }
+}
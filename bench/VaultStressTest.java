@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Belastet einen VaultManager aus vielen Threads gleichzeitig
+ *
+ * Schreiber fügen hinzu, ändern und löschen, Leser suchen, vervollständigen und lesen
+ * alle Einträge, ein Thread speichert laufend synchron und im Hintergrund. Danach wird
+ * der Tresor ohne abschließendes Speichern neu geladen: Anzahl, Reihenfolge und Inhalt
+ * der Einträge müssen mit dem Stand im Speicher übereinstimmen.
+ *
+ * Aufruf: java VaultStressTest [Dauer in ms] [Einträge] [Leser] [Schreiber] [Write-Behind in ms]
+ * Endet mit Status 1, wenn ein Fehler auftrat oder der neu geladene Stand abweicht.
+ */
+public class VaultStressTest {
+    private static final String MASTER_PASSWORD = "stress-test";
+
+    public static void main(String[] args) throws Exception {
+        long durationMillis = args.length > 0 ? Long.parseLong(args[0]) : 5_000;
+        int initialEntries = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        int writers = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        long writeBehindMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        // Die Meldungen des Managers würden die Ergebnisse überdecken
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path directory = Files.createTempDirectory("vault-stress");
+        File vaultFile = directory.resolve("stress.vault").toFile();
+        boolean passed;
+        try {
+            passed = run(out, vaultFile, durationMillis, initialEntries, readers, writers, writeBehindMillis);
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        out.println(passed ? "OK" : "FEHLGESCHLAGEN");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(PrintStream out, File vaultFile, long durationMillis, int initialEntries,
+                               int readers, int writers, long writeBehindMillis) throws Exception {
+        VaultManager manager = new VaultManager();
+        manager.setKeyDerivation(KeyDerivation.pbkdf2(100_000));
+        if (!manager.createNewVault(vaultFile, MASTER_PASSWORD)) {
+            out.println("Tresor konnte nicht erstellt werden");
+            return false;
+        }
+        for (int i = 0; i < initialEntries; i++) {
+            manager.addPassword(new PasswordEntry("site" + i, "user" + i, "p" + i, "https://s" + i + ".example.com"));
+        }
+        manager.saveVault();
+        manager.setWriteBehindDelay(writeBehindMillis);
+
+        Stats mutations = new Stats();
+        Stats reads = new Stats();
+        AtomicLong saves = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long end = System.currentTimeMillis() + durationMillis;
+
+        int threads = readers + writers + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Runnable task;
+            if (t < writers) {
+                task = () -> mutate(manager, random, mutations);
+            } else if (t == writers) {
+                task = () -> save(manager, random, saves);
+            } else {
+                task = () -> read(manager, random, reads);
+            }
+            futures.add(executor.submit(() -> {
+                while (System.currentTimeMillis() < end) {
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        errors.incrementAndGet();
+                        e.printStackTrace();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Gesammeltes Speichern im Hintergrund darf nicht mitten ins Neuladen schreiben. Ohne
+        // Verzögerung gibt es kein abschließendes Speichern, der Rest muss aus dem Journal kommen.
+        if (writeBehindMillis > 0 && !manager.saveVaultAsync().join()) {
+            errors.incrementAndGet();
+        }
+
+        List<String> expected = describe(manager.getAllPasswords());
+        boolean countMatches = manager.getPasswordCount() == expected.size();
+
+        VaultManager reloaded = new VaultManager();
+        boolean loaded = reloaded.loadVault(vaultFile, MASTER_PASSWORD);
+        List<String> actual = describe(reloaded.getAllPasswords());
+        boolean contentMatches = expected.equals(actual);
+        if (!contentMatches) {
+            printFirstDifference(out, expected, actual);
+        }
+        reloaded.closeVault();
+        manager.closeVault();
+
+        out.printf("Mutationen: %d (max %.1f ms), Lesezugriffe: %d (max %.1f ms), Speichervorgänge: %d%n",
+                mutations.count.get(), mutations.maxMillis(), reads.count.get(), reads.maxMillis(), saves.get());
+        out.printf("Fehler: %d, Einträge: %d, neu geladen: %b, Anzahl stimmt: %b, Reihenfolge und Inhalt stimmen: %b%n",
+                errors.get(), expected.size(), loaded, countMatches, contentMatches);
+        return errors.get() == 0 && loaded && countMatches && contentMatches;
+    }
+
+    private static void mutate(VaultManager manager, Random random, Stats stats) {
+        List<PasswordEntry> entries = manager.getAllPasswords();
+        int operation = random.nextInt(10);
+        long start = System.nanoTime();
+
+        boolean ok;
+        if (operation < 4 || entries.isEmpty()) {
+            ok = manager.addPassword(new PasswordEntry("new" + random.nextInt(), "u", "p", "https://n.example.com"));
+        } else if (operation < 7) {
+            // Ein anderer Schreiber kann den Eintrag inzwischen gelöscht haben
+            long id = entries.get(random.nextInt(entries.size())).getId();
+            ok = manager.removePasswordById(id) || manager.getPassword(id) == null;
+        } else {
+            long id = entries.get(random.nextInt(entries.size())).getId();
+            PasswordEntry update = new PasswordEntry("upd" + random.nextInt(), "u", "p", "https://u.example.com");
+            ok = manager.updatePasswordById(id, update) || manager.getPassword(id) == null;
+        }
+        if (!ok) {
+            throw new IllegalStateException("Änderung fehlgeschlagen");
+        }
+        stats.record(System.nanoTime() - start);
+    }
+
+    private static void save(VaultManager manager, Random random, AtomicLong saves) {
+        boolean saved = random.nextBoolean() ? manager.saveVault() : manager.saveVaultAsync().join();
+        if (!saved) {
+            throw new IllegalStateException("Speichern fehlgeschlagen");
+        }
+        saves.incrementAndGet();
+    }
+
+    private static void read(VaultManager manager, Random random, Stats stats) {
+        long start = System.nanoTime();
+        switch (random.nextInt(4)) {
+            case 0:
+                String term = "site" + random.nextInt(100);
+                for (PasswordEntry entry : manager.searchPasswords(term)) {
+                    if (!describe(entry).toLowerCase().contains(term)) {
+                        throw new IllegalStateException("Treffer ohne Suchbegriff: " + entry.getTitle());
+                    }
+                }
+                break;
+            case 1:
+                manager.searchPasswordsFuzzy("stie" + random.nextInt(10), 20);
+                break;
+            case 2:
+                manager.completeSearch("s", 8);
+                break;
+            default:
+                List<PasswordEntry> entries = manager.getAllPasswords();
+                Set<Long> ids = new HashSet<>();
+                for (PasswordEntry entry : entries) {
+                    if (!ids.add(entry.getId())) {
+                        throw new IllegalStateException("Doppelte ID in der Momentaufnahme: " + entry.getId());
+                    }
+                }
+                break;
+        }
+        stats.record(System.nanoTime() - start);
+    }
+
+    private static List<String> describe(List<PasswordEntry> entries) {
+        List<String> result = new ArrayList<>(entries.size());
+        for (PasswordEntry entry : entries) {
+            result.add(entry.getId() + "|" + describe(entry));
+        }
+        return result;
+    }
+
+    private static String describe(PasswordEntry entry) {
+        return entry.getTitle() + "|" + entry.getUsername() + "|" + entry.getPassword() + "|" + entry.getWebsite();
+    }
+
+    private static void printFirstDifference(PrintStream out, List<String> expected, List<String> actual) {
+        for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+            String expectedEntry = i < expected.size() ? expected.get(i) : null;
+            String actualEntry = i < actual.size() ? actual.get(i) : null;
+            if (!Objects.equals(expectedEntry, actualEntry)) {
+                out.println("Erste Abweichung an Position " + i + ": erwartet " + expectedEntry
+                        + ", geladen " + actualEntry);
+                return;
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Anzahl und längste Dauer der Aufrufe einer Art
+     */
+    private static final class Stats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        double maxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
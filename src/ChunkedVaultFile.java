@@ -0,0 +1,766 @@
+import javax.crypto.SecretKey;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Segmentiertes Tresor-Format mit unabhängig verschlüsselten Chunks
+ *
+ * Die Einträge werden in Chunks fester Größe ({@link #ENTRIES_PER_CHUNK} Einträge)
+ * gruppiert, jeder Chunk wird mit eigener Nonce per AES-GCM verschlüsselt. Dadurch
+ * lassen sich Speichern und Laden über den {@link ForkJoinPool} auf alle Kerne verteilen.
+ *
+ * Aufbau:
+ * <pre>
+ *   Kopf (64 Bytes)       Magic, Version 2, Salt, Einträge pro Chunk, Schlüsselableitung
+ *   2 Index-Zeiger        Generation, Position und Länge des Index, CRC32
+ *   Chunks                Nonce, Chiffretext, GCM-Tag
+ *   Index                 verschlüsselte Liste aller Chunks mit Position, Länge und Tag
+ * </pre>
+ * Der Index ist authentifiziert und enthält die Tags aller Chunks, sodass Chunks weder
+ * vertauscht noch durch ältere Versionen ersetzt werden können.
+ *
+ * Eine Instanz beschreibt die Chunks eines geöffneten Tresors und merkt sich, welche
+ * Chunks geänderte Einträge enthalten. {@link #update} hängt nur diese Chunks und einen
+ * neuen Index an die Datei an, {@link #activateIndex} schaltet danach den inaktiven
+ * Index-Zeiger um, bestehende Daten werden dabei nie überschrieben. Ein Absturz vor dem
+ * Umschalten lässt den alten Index gültig. Überholte Chunk-Versionen werden beim nächsten
+ * vollständigen Schreiben ({@link #writeAll}) entfernt.
+ *
+ * Gespeichert wird eine Kopie ({@link #beginSave}), sodass der Tresor während des
+ * Schreibens weiter geändert werden kann; {@link #saved} übernimmt danach das Ergebnis.
+ */
+public class ChunkedVaultFile {
+    public static final byte VERSION = 2;
+    public static final int ENTRIES_PER_CHUNK = 256;
+
+    private static final byte[] MAGIC = {'P', 'W', 'M', 'V'};
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_COUNT = 2;
+    private static final long DATA_OFFSET = HEADER_SIZE + (long) SLOT_SIZE * SLOT_COUNT;
+    private static final int INDEX_ENTRY_SIZE = 32;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_INDEX_LENGTH = 64 * 1024 * 1024;
+
+    // Wächst ein Chunk durch Einfügungen darüber hinaus, wird der Tresor neu aufgeteilt
+    private static final int MAX_ENTRIES_PER_CHUNK = ENTRIES_PER_CHUNK * 2;
+
+    // Überholte Daten werden geduldet, solange sie kleiner als die gültigen Daten sind
+    private static final long MIN_COMPACTION_GARBAGE = 1024 * 1024;
+
+    private static final String CHUNK_KEY_PURPOSE = "vault-chunks";
+    private static final String INDEX_KEY_PURPOSE = "vault-index";
+
+    // Anzahl gleichzeitig verarbeiteter Chunks, begrenzt den Speicherbedarf beim Speichern und Laden
+    private static final int WAVE_SIZE = Math.max(4, ForkJoinPool.getCommonPoolParallelism() * 2);
+
+    /**
+     * Position, Länge, Eintragsanzahl und GCM-Tag eines Chunks in der Datei
+     */
+    static class ChunkRef {
+        final long offset;
+        final int length;
+        final int entryCount;
+        final byte[] tag;
+
+        ChunkRef(long offset, int length, int entryCount, byte[] tag) {
+            this.offset = offset;
+            this.length = length;
+            this.entryCount = entryCount;
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Aktueller Stand eines Chunks: gespeicherte Version und Anzahl der Einträge im Speicher
+     */
+    private static class Chunk {
+        ChunkRef stored;
+        int entryCount;
+        boolean dirty;
+
+        Chunk(ChunkRef stored, int entryCount, boolean dirty) {
+            this.stored = stored;
+            this.entryCount = entryCount;
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * Unverschlüsselter Kopf mit Salt und Parametern der Schlüsselableitung
+     */
+    public static class Header {
+        public final byte[] salt;
+        public final KeyDerivation keyDerivation;
+        final byte[] bytes;
+
+        Header(byte[] salt, KeyDerivation keyDerivation, byte[] bytes) {
+            this.salt = salt;
+            this.keyDerivation = keyDerivation;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Ergebnis beim Laden eines segmentierten Tresors
+     */
+    public static class Snapshot {
+        public final List<PasswordEntry> entries;
+        public final ChunkedVaultFile layout;
+        public final boolean mapped;
+
+        Snapshot(List<PasswordEntry> entries, ChunkedVaultFile layout, boolean mapped) {
+            this.entries = entries;
+            this.layout = layout;
+            this.mapped = mapped;
+        }
+    }
+
+    private final byte[] header;
+    private final byte[] salt;
+    private final KeyDerivation keyDerivation;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private long generation;
+    private int activeSlot;
+    private int indexLength;
+    private long endOfData;
+    private byte[] token;
+    private boolean rewriteRequired;
+
+    private ChunkedVaultFile(Header header) {
+        this(header.bytes, header.salt, header.keyDerivation);
+    }
+
+    private ChunkedVaultFile(byte[] header, byte[] salt, KeyDerivation keyDerivation) {
+        this.header = header;
+        this.salt = salt;
+        this.keyDerivation = keyDerivation;
+    }
+
+    /**
+     * Prüft ob eine Datei im segmentierten Format vorliegt
+     */
+    public static boolean isChunkedVault(FileChannel channel) throws IOException {
+        if (channel.size() < DATA_OFFSET) {
+            return false;
+        }
+
+        ByteBuffer head = ByteBuffer.allocate(MAGIC.length + 1);
+        readFully(channel, head, 0);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return head.get(MAGIC.length) == VERSION;
+    }
+
+    /**
+     * Liest den unverschlüsselten Kopf, der zum Ableiten des Schlüssels benötigt wird
+     * Älteren Dateien dieses Formats ohne Angabe wird die veraltete SHA-256-Ableitung zugeordnet.
+     */
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, buffer, 0);
+        buffer.flip();
+
+        buffer.position(MAGIC.length + 1);
+        int saltLength = buffer.get() & 0xFF;
+        if (saltLength > HEADER_SIZE - MAGIC.length - 6 - KeyDerivation.ENCODED_LENGTH) {
+            throw new IOException("Ungültiger Tresor-Kopf");
+        }
+        byte[] salt = new byte[saltLength];
+        buffer.get(salt);
+
+        int entriesPerChunk = buffer.getInt();
+        if (entriesPerChunk <= 0) {
+            throw new IOException("Ungültiger Tresor-Kopf");
+        }
+        KeyDerivation keyDerivation = KeyDerivation.decode(buffer);
+
+        return new Header(salt, keyDerivation, buffer.array());
+    }
+
+    /**
+     * Legt die Aufteilung für einen vollständig neu zu schreibenden Tresor an
+     * Alle Chunks sind noch ungeschrieben, {@link #writeAll} schreibt sie.
+     */
+    public static ChunkedVaultFile plan(KeyDerivation keyDerivation, byte[] salt, int entryCount) {
+        ChunkedVaultFile layout = new ChunkedVaultFile(buildHeader(salt, keyDerivation));
+        for (int from = 0; from < entryCount; from += ENTRIES_PER_CHUNK) {
+            layout.chunks.add(new Chunk(null, Math.min(ENTRIES_PER_CHUNK, entryCount - from), true));
+        }
+        return layout;
+    }
+
+    /**
+     * Schreibt alle Einträge als neuen Tresor in einen leeren Kanal
+     * Die Chunks werden in Wellen parallel verschlüsselt und in Reihenfolge geschrieben.
+     *
+     * @return Token des geschriebenen Snapshots
+     */
+    public byte[] writeAll(FileChannel channel, EncryptionManager encryptionManager,
+                           List<PasswordEntry> entries) throws Exception {
+        checkEntryCount(entries);
+        writeFully(channel, ByteBuffer.wrap(header), 0);
+        writeFully(channel, ByteBuffer.allocate(SLOT_SIZE * SLOT_COUNT), HEADER_SIZE);
+
+        long position = writeDirtyChunks(channel, encryptionManager, entries, DATA_OFFSET);
+        appendIndex(channel, encryptionManager, 1, position);
+        writePointer(channel, 0);
+        return token;
+    }
+
+    /**
+     * Liest einen segmentierten Tresor
+     * Große Dateien werden eingeblendet, die Chunks werden in Wellen parallel entschlüsselt.
+     */
+    public static Snapshot read(FileChannel channel, EncryptionManager encryptionManager) throws Exception {
+        long size = channel.size();
+        Header fileHeader = readHeader(channel);
+        byte[] header = fileHeader.bytes;
+        byte[] salt = fileHeader.salt;
+
+        SecretKey chunkKey = encryptionManager.deriveVaultKey(salt, CHUNK_KEY_PURPOSE);
+        SecretKey indexKey = encryptionManager.deriveVaultKey(salt, INDEX_KEY_PURPOSE);
+
+        MappedByteBuffer mapped = VaultContainer.mapForReading(channel, size);
+        IndexData index;
+        List<PasswordEntry> entries = new ArrayList<>();
+
+        // Alle Ausschnitte der Einblendung werden innerhalb dieses Blocks verbraucht
+        try {
+            index = readNewestIndex(channel, mapped, encryptionManager, indexKey, header, size);
+            List<ChunkRef> refs = index.chunks;
+
+            for (int waveStart = 0; waveStart < refs.size(); waveStart += WAVE_SIZE) {
+                int waveEnd = Math.min(refs.size(), waveStart + WAVE_SIZE);
+
+                List<Callable<List<PasswordEntry>>> tasks = new ArrayList<>(waveEnd - waveStart);
+                for (int chunk = waveStart; chunk < waveEnd; chunk++) {
+                    ChunkRef ref = refs.get(chunk);
+                    if (ref.offset < DATA_OFFSET || ref.offset + ref.length > size) {
+                        throw new IOException("Chunk liegt außerhalb der Tresor-Datei");
+                    }
+                    int chunkNumber = chunk;
+                    tasks.add(() -> {
+                        ByteBuffer record = readRegion(channel, mapped, ref.offset, ref.length);
+                        verifyTag(record, ref.tag);
+                        byte[] plain = encryptionManager.decryptRecord(chunkKey, record,
+                                chunkAssociatedData(header, chunkNumber));
+                        return decodeChunk(plain, ref.entryCount);
+                    });
+                }
+
+                for (List<PasswordEntry> chunkEntries : invokeAll(tasks)) {
+                    entries.addAll(chunkEntries);
+                }
+            }
+        } finally {
+            VaultContainer.unmap(mapped);
+        }
+
+        ChunkedVaultFile layout = new ChunkedVaultFile(fileHeader);
+        for (ChunkRef ref : index.chunks) {
+            layout.chunks.add(new Chunk(ref, ref.entryCount, false));
+        }
+        layout.generation = index.generation;
+        layout.activeSlot = index.slot;
+        layout.indexLength = index.length;
+        layout.token = index.token;
+        // Nach einem Absturz kann hinter dem letzten Index ein unvollständiger Rest liegen
+        layout.endOfData = size;
+
+        return new Snapshot(entries, layout, mapped != null);
+    }
+
+    /**
+     * Schreibt die geänderten Chunks und einen neuen Index ans Ende der Datei
+     * Gültig wird der neue Index erst mit {@link #activateIndex}.
+     *
+     * @param entries alle Einträge des Tresors in der Reihenfolge der Chunks
+     * @return Token des neuen Snapshots
+     */
+    public byte[] update(FileChannel channel, EncryptionManager encryptionManager,
+                         List<PasswordEntry> entries) throws Exception {
+        checkEntryCount(entries);
+        long position = Math.max(endOfData, channel.size());
+        position = writeDirtyChunks(channel, encryptionManager, entries, position);
+        appendIndex(channel, encryptionManager, generation + 1, position);
+        return token;
+    }
+
+    /**
+     * Schaltet den inaktiven Index-Zeiger auf den mit {@link #update} geschriebenen Index um
+     */
+    public void activateIndex(FileChannel channel) throws IOException {
+        writePointer(channel, 1 - activeSlot);
+    }
+
+    /**
+     * Übernimmt die ungespeicherten Änderungen in eine Kopie, die ohne Sperre geschrieben wird
+     * Diese Instanz gilt danach als gespeichert und vermerkt nur noch spätere Änderungen.
+     */
+    public ChunkedVaultFile beginSave() {
+        ChunkedVaultFile copy = new ChunkedVaultFile(header, salt, keyDerivation);
+        for (Chunk chunk : chunks) {
+            copy.chunks.add(new Chunk(chunk.stored, chunk.entryCount, chunk.dirty));
+            chunk.dirty = false;
+        }
+        copy.generation = generation;
+        copy.activeSlot = activeSlot;
+        copy.indexLength = indexLength;
+        copy.endOfData = endOfData;
+        copy.token = token;
+        copy.rewriteRequired = rewriteRequired;
+        return copy;
+    }
+
+    /**
+     * Übernimmt Chunk-Positionen und Index einer mit {@link #beginSave} erstellten und geschriebenen Kopie
+     * Chunks werden nur am Ende angefügt oder entfernt, die Nummern der übrigen bleiben gleich.
+     * Seit {@link #beginSave} geänderte Chunks bleiben als geändert markiert.
+     */
+    public void saved(ChunkedVaultFile written) {
+        for (int i = 0; i < Math.min(chunks.size(), written.chunks.size()); i++) {
+            chunks.get(i).stored = written.chunks.get(i).stored;
+        }
+        this.generation = written.generation;
+        this.activeSlot = written.activeSlot;
+        this.indexLength = written.indexLength;
+        this.endOfData = written.endOfData;
+        this.token = written.token;
+    }
+
+    /**
+     * Vermerkt einen an der Position eingefügten Eintrag
+     */
+    public void entryInserted(int index) {
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.entryCount;
+        }
+
+        if (index == total && (last == null || last.entryCount >= ENTRIES_PER_CHUNK)) {
+            // Angehängt an einen vollen letzten Chunk: neuen Chunk beginnen
+            chunks.add(new Chunk(null, 1, true));
+            return;
+        }
+
+        int start = 0;
+        for (Chunk chunk : chunks) {
+            if (index <= start + chunk.entryCount) {
+                chunk.entryCount++;
+                chunk.dirty = true;
+                if (chunk.entryCount > MAX_ENTRIES_PER_CHUNK) {
+                    rewriteRequired = true;
+                }
+                return;
+            }
+            start += chunk.entryCount;
+        }
+        rewriteRequired = true;
+    }
+
+    /**
+     * Vermerkt einen an der Position entfernten Eintrag
+     * Leere Chunks bleiben bis zum nächsten vollständigen Schreiben erhalten,
+     * damit sich die Nummern der folgenden Chunks nicht verschieben.
+     */
+    public void entryRemoved(int index) {
+        int chunkNumber = findChunk(index);
+        if (chunkNumber < 0) {
+            rewriteRequired = true;
+            return;
+        }
+
+        Chunk chunk = chunks.get(chunkNumber);
+        chunk.entryCount--;
+        chunk.dirty = true;
+        if (chunk.entryCount == 0 && chunkNumber == chunks.size() - 1) {
+            chunks.remove(chunkNumber);
+        }
+    }
+
+    /**
+     * Vermerkt einen an der Position geänderten Eintrag
+     */
+    public void entryUpdated(int index) {
+        int chunkNumber = findChunk(index);
+        if (chunkNumber < 0) {
+            rewriteRequired = true;
+            return;
+        }
+        chunks.get(chunkNumber).dirty = true;
+    }
+
+    /**
+     * Gibt die Anzahl der Chunks mit ungespeicherten Änderungen zurück
+     */
+    public int getDirtyChunkCount() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.dirty || chunk.stored == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Prüft ob die Datei vollständig neu geschrieben werden sollte, weil die Aufteilung
+     * ungünstig geworden ist oder überholte Daten zu viel Platz belegen
+     */
+    public boolean needsRewrite() {
+        if (rewriteRequired) {
+            return true;
+        }
+
+        long live = DATA_OFFSET + indexLength;
+        for (Chunk chunk : chunks) {
+            if (chunk.stored != null) {
+                live += chunk.stored.length;
+            }
+        }
+        long garbage = endOfData - live;
+        return garbage > Math.max(live, MIN_COMPACTION_GARBAGE);
+    }
+
+    /**
+     * Gibt das Token des zuletzt geschriebenen oder gelesenen Snapshots zurück
+     */
+    public byte[] getToken() {
+        return token;
+    }
+
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public KeyDerivation getKeyDerivation() {
+        return keyDerivation;
+    }
+
+    /**
+     * Sucht den Chunk, der den Eintrag an der Position enthält
+     */
+    private int findChunk(int index) {
+        int start = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            int count = chunks.get(i).entryCount;
+            if (index >= start && index < start + count) {
+                return i;
+            }
+            start += count;
+        }
+        return -1;
+    }
+
+    /**
+     * Verschlüsselt alle geänderten Chunks in Wellen parallel und schreibt sie ab der Position
+     *
+     * @return Position hinter dem zuletzt geschriebenen Chunk
+     */
+    private long writeDirtyChunks(FileChannel channel, EncryptionManager encryptionManager,
+                                  List<PasswordEntry> entries, long position) throws Exception {
+        SecretKey chunkKey = encryptionManager.deriveVaultKey(salt, CHUNK_KEY_PURPOSE);
+
+        List<Integer> dirty = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            if (chunk.dirty || chunk.stored == null) {
+                dirty.add(i);
+                starts.add(start);
+            }
+            start += chunk.entryCount;
+        }
+
+        for (int waveStart = 0; waveStart < dirty.size(); waveStart += WAVE_SIZE) {
+            int waveEnd = Math.min(dirty.size(), waveStart + WAVE_SIZE);
+
+            List<Callable<byte[]>> tasks = new ArrayList<>(waveEnd - waveStart);
+            for (int i = waveStart; i < waveEnd; i++) {
+                int chunkNumber = dirty.get(i);
+                int from = starts.get(i);
+                List<PasswordEntry> chunkEntries = entries.subList(from, from + chunks.get(chunkNumber).entryCount);
+                tasks.add(() -> encryptionManager.encryptRecord(chunkKey,
+                        encodeChunk(chunkEntries), chunkAssociatedData(header, chunkNumber)));
+            }
+
+            List<byte[]> encrypted = invokeAll(tasks);
+            for (int i = 0; i < encrypted.size(); i++) {
+                byte[] record = encrypted.get(i);
+                Chunk chunk = chunks.get(dirty.get(waveStart + i));
+
+                writeFully(channel, ByteBuffer.wrap(record), position);
+                chunk.stored = new ChunkRef(position, record.length, chunk.entryCount, tagOf(record));
+                chunk.dirty = false;
+                position += record.length;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Entschlüsselter Index mit Chunk-Liste und Token
+     */
+    private static class IndexData {
+        final long generation;
+        final int slot;
+        final int length;
+        final List<ChunkRef> chunks;
+        final byte[] token;
+
+        IndexData(long generation, int slot, int length, List<ChunkRef> chunks, byte[] token) {
+            this.generation = generation;
+            this.slot = slot;
+            this.length = length;
+            this.chunks = chunks;
+            this.token = token;
+        }
+    }
+
+    private void checkEntryCount(List<PasswordEntry> entries) {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.entryCount;
+        }
+        if (total != entries.size()) {
+            throw new IllegalStateException("Chunk-Aufteilung passt nicht zu den Einträgen ("
+                    + total + " statt " + entries.size() + ")");
+        }
+    }
+
+    /**
+     * Verschlüsselt den Index und hängt ihn an, die Index-Zeiger bleiben unverändert
+     */
+    private void appendIndex(FileChannel channel, EncryptionManager encryptionManager,
+                             long newGeneration, long position) throws Exception {
+        ByteBuffer plain = ByteBuffer.allocate(12 + chunks.size() * INDEX_ENTRY_SIZE);
+        plain.putLong(newGeneration).putInt(chunks.size());
+        for (Chunk chunk : chunks) {
+            ChunkRef ref = chunk.stored;
+            plain.putLong(ref.offset).putInt(ref.length).putInt(ref.entryCount).put(ref.tag);
+        }
+
+        SecretKey indexKey = encryptionManager.deriveVaultKey(salt, INDEX_KEY_PURPOSE);
+        byte[] record = encryptionManager.encryptRecord(indexKey, plain.array(),
+                indexAssociatedData(header, newGeneration));
+        writeFully(channel, ByteBuffer.wrap(record), position);
+
+        // Zeiger erst schreiben, wenn Chunks und Index vollständig auf dem Datenträger liegen
+        channel.force(false);
+
+        this.generation = newGeneration;
+        this.indexLength = record.length;
+        this.endOfData = position + record.length;
+        this.token = tagOf(record);
+    }
+
+    /**
+     * Lässt einen Index-Zeiger auf den zuletzt angehängten Index zeigen
+     */
+    private void writePointer(FileChannel channel, int slot) throws IOException {
+        ByteBuffer pointer = ByteBuffer.allocate(SLOT_SIZE);
+        pointer.putLong(generation).putLong(endOfData - indexLength).putInt(indexLength);
+        CRC32 crc = new CRC32();
+        crc.update(pointer.array(), 0, 20);
+        pointer.putInt((int) crc.getValue());
+        pointer.clear();
+        writeFully(channel, pointer, HEADER_SIZE + (long) slot * SLOT_SIZE);
+        channel.force(false);
+        this.activeSlot = slot;
+    }
+
+    /**
+     * Liest den Index über den gültigen Zeiger mit der höchsten Generation
+     * Ist dieser unbrauchbar (z.B. nach einem Absturz), wird der andere Zeiger verwendet.
+     */
+    private static IndexData readNewestIndex(FileChannel channel, MappedByteBuffer mapped,
+                                             EncryptionManager encryptionManager, SecretKey indexKey,
+                                             byte[] header, long size) throws Exception {
+        ByteBuffer slots = readRegion(channel, mapped, HEADER_SIZE, SLOT_SIZE * SLOT_COUNT);
+        long[] generations = new long[SLOT_COUNT];
+        long[] offsets = new long[SLOT_COUNT];
+        int[] lengths = new int[SLOT_COUNT];
+        boolean[] valid = new boolean[SLOT_COUNT];
+
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            byte[] data = new byte[SLOT_SIZE];
+            slots.get(data);
+            ByteBuffer pointer = ByteBuffer.wrap(data);
+            generations[slot] = pointer.getLong();
+            offsets[slot] = pointer.getLong();
+            lengths[slot] = pointer.getInt();
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, 20);
+            valid[slot] = generations[slot] > 0 && pointer.getInt() == (int) crc.getValue()
+                    && lengths[slot] > 0 && lengths[slot] <= MAX_INDEX_LENGTH
+                    && offsets[slot] >= DATA_OFFSET && offsets[slot] + lengths[slot] <= size;
+        }
+
+        Exception lastError = new IOException("Tresor-Datei enthält keinen gültigen Index");
+        for (int attempt = 0; attempt < SLOT_COUNT; attempt++) {
+            int best = -1;
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                if (valid[slot] && (best < 0 || generations[slot] > generations[best])) {
+                    best = slot;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            valid[best] = false;
+
+            try {
+                ByteBuffer record = readRegion(channel, mapped, offsets[best], lengths[best]);
+                byte[] token = tagOf(record);
+                byte[] plain = encryptionManager.decryptRecord(indexKey, record,
+                        indexAssociatedData(header, generations[best]));
+
+                ByteBuffer index = ByteBuffer.wrap(plain);
+                long generation = index.getLong();
+                int count = index.getInt();
+                if (generation != generations[best] || count < 0 || count * INDEX_ENTRY_SIZE > index.remaining()) {
+                    throw new IOException("Ungültiger Tresor-Index");
+                }
+
+                List<ChunkRef> chunks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long offset = index.getLong();
+                    int length = index.getInt();
+                    int entryCount = index.getInt();
+                    byte[] tag = new byte[TAG_LENGTH];
+                    index.get(tag);
+                    chunks.add(new ChunkRef(offset, length, entryCount, tag));
+                }
+                return new IndexData(generation, best, lengths[best], chunks, token);
+
+            } catch (Exception e) {
+                lastError = e;
+            }
+        }
+
+        throw new IOException("Tresor konnte nicht authentifiziert werden (falsches Master-Passwort oder beschädigte Datei)",
+                lastError);
+    }
+
+    private static Header buildHeader(byte[] salt, KeyDerivation keyDerivation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put(VERSION).put((byte) salt.length).put(salt).putInt(ENTRIES_PER_CHUNK);
+        keyDerivation.encode(header);
+        return new Header(salt, keyDerivation, header.array());
+    }
+
+    private static byte[] encodeChunk(List<PasswordEntry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries.size() * 96 + 16);
+        VaultCodec.Encoder encoder = new VaultCodec.Encoder(out);
+        for (PasswordEntry entry : entries) {
+            encoder.writeEntry(entry);
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    private static List<PasswordEntry> decodeChunk(byte[] plain, int expectedCount) throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>(expectedCount);
+        VaultCodec.Decoder decoder = new VaultCodec.Decoder(new ByteArrayInputStream(plain));
+        PasswordEntry entry;
+        while ((entry = decoder.readEntry()) != null) {
+            entries.add(entry);
+        }
+        if (entries.size() != expectedCount) {
+            throw new IOException("Chunk enthält " + entries.size() + " statt " + expectedCount + " Einträge");
+        }
+        return entries;
+    }
+
+    private static byte[] chunkAssociatedData(byte[] header, int chunkNumber) {
+        return ByteBuffer.allocate(header.length + 5).put(header).put((byte) 'C').putInt(chunkNumber).array();
+    }
+
+    private static byte[] indexAssociatedData(byte[] header, long generation) {
+        return ByteBuffer.allocate(header.length + 9).put(header).put((byte) 'I').putLong(generation).array();
+    }
+
+    private static byte[] tagOf(byte[] record) {
+        byte[] tag = new byte[TAG_LENGTH];
+        System.arraycopy(record, record.length - TAG_LENGTH, tag, 0, TAG_LENGTH);
+        return tag;
+    }
+
+    private static byte[] tagOf(ByteBuffer record) {
+        byte[] tag = new byte[TAG_LENGTH];
+        ByteBuffer tail = record.duplicate();
+        tail.position(record.limit() - TAG_LENGTH);
+        tail.get(tag);
+        return tag;
+    }
+
+    private static void verifyTag(ByteBuffer record, byte[] expected) throws IOException {
+        if (!java.security.MessageDigest.isEqual(tagOf(record), expected)) {
+            throw new IOException("Chunk passt nicht zum Tresor-Index");
+        }
+    }
+
+    /**
+     * Liefert einen Dateibereich, aus der Einblendung ohne Kopie oder per Lesezugriff
+     */
+    private static ByteBuffer readRegion(FileChannel channel, MappedByteBuffer mapped,
+                                         long offset, int length) throws IOException {
+        if (mapped != null) {
+            ByteBuffer region = mapped.duplicate();
+            region.position((int) offset);
+            region.limit((int) offset + length);
+            return region.slice();
+        }
+
+        ByteBuffer region = ByteBuffer.allocate(length);
+        readFully(channel, region, offset);
+        region.flip();
+        return region;
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+        return results;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("Unerwartetes Ende der Tresor-Datei");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Präfixbaum für Vervollständigungen im Suchfeld (Titel und Domains)
+ *
+ * Die Knoten liegen in parallelen Arrays (Zeichen, erstes Kind, nächstes Geschwister)
+ * statt in einzelnen Objekten. Jeder Knoten merkt sich den besten Begriff seines
+ * Teilbaums, eine Vervollständigung läuft daher nur den Pfad des Präfixes ab und
+ * öffnet danach gezielt die besten Teilbäume. Der Aufwand hängt von Präfixlänge und
+ * Anzahl der Vorschläge ab, nicht von der Anzahl der Einträge.
+ * Begriffe werden nach Häufigkeit, dann Länge und Alphabet sortiert vorgeschlagen.
+ * Knoten ohne verbleibende Begriffe werden beim Entfernen freigegeben und wiederverwendet.
+ */
+public class CompletionTrie {
+    private static final int NO_TERM = -1;
+
+    // Knoten, Knoten 0 ist die Wurzel
+    private char[] labels = new char[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int[] parent = new int[64];
+    private int[] terminal = new int[64];
+    private int[] best = new int[64];
+    private int nodeCount;
+    private int[] freeNodes = new int[8];
+    private int freeNodeCount;
+
+    // Begriffe: Anzeigetext, kleingeschriebener Schlüssel und Anzahl der Einträge
+    private String[] terms = new String[16];
+    private String[] keys = new String[16];
+    private int[] termCounts = new int[16];
+    private int termCount;
+    private int[] freeTerms = new int[8];
+    private int freeTermCount;
+
+    public CompletionTrie() {
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(terms, 0, termCount, null);
+        Arrays.fill(keys, 0, termCount, null);
+        termCount = 0;
+        freeTermCount = 0;
+        nodeCount = 0;
+        freeNodeCount = 0;
+        newNode('\0', -1);
+    }
+
+    /**
+     * Nimmt einen Begriff auf oder erhöht dessen Anzahl
+     */
+    public void add(String text) {
+        String key = keyOf(text);
+        if (key == null) {
+            return;
+        }
+
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int child = findChild(node, key.charAt(i));
+            if (child < 0) {
+                child = newNode(key.charAt(i), node);
+                nextSibling[child] = firstChild[node];
+                firstChild[node] = child;
+            }
+            node = child;
+        }
+
+        if (terminal[node] == NO_TERM) {
+            terminal[node] = newTerm(text.trim(), key);
+        } else {
+            termCounts[terminal[node]]++;
+        }
+
+        // Der Begriff ist nur besser geworden: aufwärts eintragen, bis ein besserer Begriff gilt
+        int term = terminal[node];
+        for (; node >= 0; node = parent[node]) {
+            if (best[node] != NO_TERM && best[node] != term && compareTerms(best[node], term) < 0) {
+                break;
+            }
+            best[node] = term;
+        }
+    }
+
+    /**
+     * Verringert die Anzahl eines Begriffs und entfernt ihn, wenn sie null erreicht
+     */
+    public void remove(String text) {
+        String key = keyOf(text);
+        if (key == null) {
+            return;
+        }
+
+        int node = findNode(key);
+        if (node < 0 || terminal[node] == NO_TERM) {
+            return;
+        }
+
+        int term = terminal[node];
+        termCounts[term]--;
+        if (termCounts[term] == 0) {
+            terminal[node] = NO_TERM;
+        }
+
+        // Nur Knoten, deren bester Begriff dieser war, müssen neu bestimmt werden
+        for (; node >= 0 && best[node] == term; node = parent[node]) {
+            int candidate = terminal[node];
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (best[child] != NO_TERM && (candidate == NO_TERM || compareTerms(best[child], candidate) < 0)) {
+                    candidate = best[child];
+                }
+            }
+            best[node] = candidate;
+        }
+
+        if (termCounts[term] == 0) {
+            pruneNodes(findNode(key));
+            terms[term] = null;
+            keys[term] = null;
+            if (freeTermCount == freeTerms.length) {
+                freeTerms = Arrays.copyOf(freeTerms, freeTermCount * 2);
+            }
+            freeTerms[freeTermCount++] = term;
+        }
+    }
+
+    /**
+     * Gibt den Knoten und seine Vorfahren frei, solange sie weder Begriff noch Kinder haben
+     */
+    private void pruneNodes(int node) {
+        while (node > 0 && terminal[node] == NO_TERM && firstChild[node] < 0) {
+            int parentNode = parent[node];
+            if (firstChild[parentNode] == node) {
+                firstChild[parentNode] = nextSibling[node];
+            } else {
+                int sibling = firstChild[parentNode];
+                while (nextSibling[sibling] != node) {
+                    sibling = nextSibling[sibling];
+                }
+                nextSibling[sibling] = nextSibling[node];
+            }
+
+            if (freeNodeCount == freeNodes.length) {
+                freeNodes = Arrays.copyOf(freeNodes, freeNodeCount * 2);
+            }
+            freeNodes[freeNodeCount++] = node;
+            node = parentNode;
+        }
+    }
+
+    /**
+     * Liefert die besten Begriffe, die mit dem Präfix beginnen
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>();
+        String key = keyOf(prefix);
+        if (key == null || limit <= 0) {
+            return completions;
+        }
+
+        int node = findNode(key);
+        if (node < 0 || best[node] == NO_TERM) {
+            return completions;
+        }
+
+        // Bestensuche: Teilbäume als Knotennummer, fertige Begriffe als ~Begriffsnummer
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> compareTerms(termOf(a), termOf(b)));
+        queue.add(node);
+        while (!queue.isEmpty() && completions.size() < limit) {
+            int item = queue.poll();
+            if (item < 0) {
+                completions.add(terms[~item]);
+                continue;
+            }
+
+            if (terminal[item] != NO_TERM) {
+                queue.add(~terminal[item]);
+            }
+            for (int child = firstChild[item]; child >= 0; child = nextSibling[child]) {
+                if (best[child] != NO_TERM) {
+                    queue.add(child);
+                }
+            }
+        }
+        return completions;
+    }
+
+    public int size() {
+        return termCount - freeTermCount;
+    }
+
+    /**
+     * Anzahl der belegten Knoten einschließlich der Wurzel
+     */
+    public int nodeCount() {
+        return nodeCount - freeNodeCount;
+    }
+
+    private int termOf(int item) {
+        return item < 0 ? ~item : best[item];
+    }
+
+    /**
+     * Häufigere Begriffe zuerst, dann kürzere, dann alphabetisch
+     */
+    private int compareTerms(int a, int b) {
+        if (termCounts[a] != termCounts[b]) {
+            return Integer.compare(termCounts[b], termCounts[a]);
+        }
+        if (keys[a].length() != keys[b].length()) {
+            return Integer.compare(keys[a].length(), keys[b].length());
+        }
+        return keys[a].compareTo(keys[b]);
+    }
+
+    private int findNode(String key) {
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = findChild(node, key.charAt(i));
+        }
+        return node;
+    }
+
+    private int findChild(int node, char label) {
+        int child = firstChild[node];
+        while (child >= 0 && labels[child] != label) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    private int newNode(char label, int parentNode) {
+        int node;
+        if (freeNodeCount > 0) {
+            node = freeNodes[--freeNodeCount];
+        } else {
+            if (nodeCount == labels.length) {
+                int capacity = nodeCount * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                terminal = Arrays.copyOf(terminal, capacity);
+                best = Arrays.copyOf(best, capacity);
+            }
+            node = nodeCount++;
+        }
+        labels[node] = label;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        parent[node] = parentNode;
+        terminal[node] = NO_TERM;
+        best[node] = NO_TERM;
+        return node;
+    }
+
+    private int newTerm(String text, String key) {
+        int term;
+        if (freeTermCount > 0) {
+            term = freeTerms[--freeTermCount];
+        } else {
+            if (termCount == terms.length) {
+                int capacity = termCount * 2;
+                terms = Arrays.copyOf(terms, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                termCounts = Arrays.copyOf(termCounts, capacity);
+            }
+            term = termCount++;
+        }
+        terms[term] = text;
+        keys[term] = key;
+        termCounts[term] = 1;
+        return term;
+    }
+
+    private static String keyOf(String text) {
+        if (text == null) {
+            return null;
+        }
+        String key = text.trim().toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+}
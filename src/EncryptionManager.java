@@ -1,52 +1,169 @@
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.MessageDigest;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.crypto.SecretKey;
 
 /**
  * Verwaltet die Verschlüsselung und Entschlüsselung von Daten
- * Verwendet AES-256 Verschlüsselung mit CBC Modus
+ * Datensätze, Chunks und Journal werden mit AES-256-GCM verschlüsselt und authentifiziert,
+ * AES-256-CBC wird nur noch für Base64-Texte und den Import alter Tresore verwendet.
  */
 public class EncryptionManager {
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
     private static final String KEY_ALGORITHM = "AES";
     private static final int IV_LENGTH = 16;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final String RECORD_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int RECORD_NONCE_LENGTH = 12;
+    private static final int RECORD_TAG_BITS = 128;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final SecureRandom random = new SecureRandom();
+
+    // Je Thread wiederverwendete Instanzen für abgeschlossene Einzeloperationen, die vor jeder
+    // Verwendung neu initialisiert werden. Streams erhalten eigene Instanzen, da sie über
+    // den Methodenaufruf hinaus leben. Die Instanzen gehören zu diesem Manager und werden
+    // bei jedem Schlüsselwechsel überschrieben und verworfen, damit Worker-Threads keinen
+    // Schlüsselzustand behalten.
+    private volatile ThreadLocal<Cipher> blockCiphers;
+    private volatile ThreadLocal<Cipher> recordCiphers;
+    private volatile ThreadLocal<Mac> macs;
+    private final Set<Object> issuedPrimitives = ConcurrentHashMap.newKeySet();
 
     private SecretKey encryptionKey;
 
+    // Ableitung und Salt des aktuellen Schlüssels, damit er ohne erneute Ableitung wiederverwendet werden kann
+    private KeyDerivation keyDerivation;
+    private byte[] keySalt;
+
+    // Bereits abgeleitete Teilschlüssel je Salt und Verwendungszweck
+    private final Map<String, byte[]> subkeys = new ConcurrentHashMap<>();
+
+    public EncryptionManager() {
+        resetPrimitives();
+    }
+
     /**
-     * Erstellt einen Verschlüsselungsschlüssel aus einem Passwort
+     * Erstellt einen Verschlüsselungsschlüssel aus einem Passwort (veraltete Ableitung ohne Salt)
      */
     public SecretKey deriveKeyFromPassword(String password) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] keyBytes = digest.digest(password.getBytes("UTF-8"));
-        this.encryptionKey = new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+        return deriveKeyFromPassword(password, KeyDerivation.legacySha256(), null);
+    }
+
+    /**
+     * Erstellt einen Verschlüsselungsschlüssel aus Passwort, Ableitungsverfahren und Salt
+     */
+    public SecretKey deriveKeyFromPassword(String password, KeyDerivation derivation, byte[] salt) throws Exception {
+        byte[] keyBytes = derivation.deriveKey(password, salt);
+        setEncryptionKey(new SecretKeySpec(keyBytes, KEY_ALGORITHM));
+        Arrays.fill(keyBytes, (byte) 0);
+
+        this.keyDerivation = derivation;
+        this.keySalt = salt != null ? salt.clone() : null;
         return this.encryptionKey;
     }
 
+    /**
+     * Prüft ob der aktuelle Schlüssel bereits mit diesem Verfahren und Salt abgeleitet wurde
+     * (für dasselbe Passwort, z.B. beim Durchsuchen mehrerer Snapshots)
+     */
+    public boolean isKeyDerivedWith(KeyDerivation derivation, byte[] salt) {
+        return encryptionKey != null && derivation.equals(keyDerivation)
+                && (derivation.isLegacy() || Arrays.equals(salt, keySalt));
+    }
+
     /**
      * Setzt den Verschlüsselungsschlüssel
      */
     public void setEncryptionKey(SecretKey key) {
         this.encryptionKey = key;
+        this.keyDerivation = null;
+        this.keySalt = null;
+        subkeys.values().forEach(subkey -> Arrays.fill(subkey, (byte) 0));
+        subkeys.clear();
+        resetPrimitives();
+    }
+
+    /**
+     * Überschreibt den Schlüsselzustand aller ausgegebenen Cipher- und MAC-Instanzen mit
+     * einem Wegwerfschlüssel und legt neue Thread-Instanzen an
+     */
+    private void resetPrimitives() {
+        if (!issuedPrimitives.isEmpty()) {
+            byte[] scratch = new byte[32];
+            random.nextBytes(scratch);
+            SecretKeySpec scratchKey = new SecretKeySpec(scratch, KEY_ALGORITHM);
+            byte[] nonce = new byte[RECORD_NONCE_LENGTH];
+            for (Object primitive : issuedPrimitives) {
+                try {
+                    if (primitive instanceof Mac) {
+                        ((Mac) primitive).init(new SecretKeySpec(scratch, MAC_ALGORITHM));
+                    } else if (RECORD_ALGORITHM.equals(((Cipher) primitive).getAlgorithm())) {
+                        random.nextBytes(nonce);
+                        ((Cipher) primitive).init(Cipher.ENCRYPT_MODE, scratchKey,
+                                new GCMParameterSpec(RECORD_TAG_BITS, nonce));
+                    } else {
+                        ((Cipher) primitive).init(Cipher.ENCRYPT_MODE, scratchKey, random);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Schlüsselzustand konnte nicht überschrieben werden: " + e.getMessage());
+                }
+            }
+            Arrays.fill(scratch, (byte) 0);
+            issuedPrimitives.clear();
+        }
+
+        this.blockCiphers = ThreadLocal.withInitial(() -> issue(newCipher(ALGORITHM)));
+        this.recordCiphers = ThreadLocal.withInitial(() -> issue(newCipher(RECORD_ALGORITHM)));
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                return issue(Mac.getInstance(MAC_ALGORITHM));
+            } catch (Exception e) {
+                throw new IllegalStateException("MAC-Algorithmus nicht verfügbar: " + MAC_ALGORITHM, e);
+            }
+        });
+    }
+
+    private <T> T issue(T primitive) {
+        issuedPrimitives.add(primitive);
+        return primitive;
     }
 
     /**
      * Verschlüsselt einen Text und gibt das Ergebnis als Base64 String zurück
      */
     public String encrypt(String plaintext) throws Exception {
+        return encrypt(plaintext.getBytes("UTF-8"));
+    }
+
+    /**
+     * Verschlüsselt Binärdaten und gibt das Ergebnis als Base64 String zurück
+     */
+    public String encrypt(byte[] plaintext) throws Exception {
         if (encryptionKey == null) {
             throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
         }
 
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
+        Cipher cipher = blockCiphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, random);
 
         byte[] iv = cipher.getIV();
-        byte[] encryptedData = cipher.doFinal(plaintext.getBytes("UTF-8"));
+        byte[] encryptedData = cipher.doFinal(plaintext);
 
         // IV und verschlüsselte Daten kombinieren
         byte[] combined = new byte[iv.length + encryptedData.length];
@@ -60,6 +177,13 @@ public class EncryptionManager {
      * Entschlüsselt einen Base64-kodierten verschlüsselten Text
      */
     public String decrypt(String encryptedData) throws Exception {
+        return new String(decryptToBytes(encryptedData), "UTF-8");
+    }
+
+    /**
+     * Entschlüsselt einen Base64-kodierten verschlüsselten Text zu Binärdaten
+     */
+    public byte[] decryptToBytes(String encryptedData) throws Exception {
         if (encryptionKey == null) {
             throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
         }
@@ -72,11 +196,196 @@ public class EncryptionManager {
         System.arraycopy(data, 0, iv, 0, IV_LENGTH);
         System.arraycopy(data, IV_LENGTH, encrypted, 0, encrypted.length);
 
+        Cipher cipher = blockCiphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
+
+        return cipher.doFinal(encrypted);
+    }
+
+    /**
+     * Verschlüsselt einen Stream blockweise in einen anderen Stream
+     * Der Speicherbedarf ist unabhängig von der Datenmenge durch einen festen Puffer begrenzt.
+     * Ausgabeformat wie bei {@link #encrypt(byte[])}, jedoch ohne Base64.
+     */
+    public void encrypt(InputStream in, OutputStream out) throws Exception {
+        OutputStream cipherOut = encryptingStream(out);
+        copy(in, cipherOut);
+        // Schreibt den letzten Block inklusive Padding
+        cipherOut.close();
+    }
+
+    /**
+     * Entschlüsselt einen mit {@link #encrypt(InputStream, OutputStream)} erzeugten Stream blockweise
+     */
+    public void decrypt(InputStream in, OutputStream out) throws Exception {
+        try (InputStream cipherIn = decryptingStream(in)) {
+            copy(cipherIn, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Gibt einen Stream zurück, der alle geschriebenen Daten verschlüsselt an das Ziel weitergibt
+     * Der IV wird sofort geschrieben, der letzte Block beim Schließen. Schließen des
+     * zurückgegebenen Streams schließt auch das Ziel.
+     */
+    public OutputStream encryptingStream(OutputStream sink) throws Exception {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
+        }
+
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
+        sink.write(cipher.getIV());
+
+        return new CipherOutputStream(sink, cipher);
+    }
+
+    /**
+     * Gibt einen Stream zurück, der die Daten der Quelle beim Lesen entschlüsselt
+     * Ein falscher Schlüssel oder beschädigte Daten führen spätestens am Ende zu einer IOException.
+     */
+    public InputStream decryptingStream(InputStream source) throws Exception {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
+        }
+
+        byte[] iv = source.readNBytes(IV_LENGTH);
+        if (iv.length != IV_LENGTH) {
+            throw new EOFException("Verschlüsselte Daten sind zu kurz");
+        }
+
         Cipher cipher = Cipher.getInstance(ALGORITHM);
         cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
 
-        byte[] decryptedData = cipher.doFinal(encrypted);
-        return new String(decryptedData, "UTF-8");
+        return new CipherInputStream(source, cipher);
+    }
+
+    /**
+     * Erzeugt eine Cipher-Instanz für den Inhalt eines Tresor-Containers
+     * Der Schlüssel wird aus dem Hauptschlüssel und dem Salt des Tresors abgeleitet.
+     * Beim Verschlüsseln mit {@code iv == null} wird ein zufälliger IV erzeugt.
+     */
+    public Cipher createVaultCipher(int mode, byte[] salt, byte[] iv) throws Exception {
+        SecretKeySpec key = new SecretKeySpec(deriveSubkey(salt, "vault-encryption"), KEY_ALGORITHM);
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        if (iv == null) {
+            cipher.init(mode, key, random);
+        } else {
+            cipher.init(mode, key, new IvParameterSpec(iv));
+        }
+        return cipher;
+    }
+
+    /**
+     * Erzeugt einen HMAC für die Authentifizierung eines Tresor-Containers
+     */
+    public Mac createVaultMac(byte[] salt) throws Exception {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(deriveSubkey(salt, "vault-authentication"), MAC_ALGORITHM));
+        return mac;
+    }
+
+    /**
+     * Leitet einen getrennten Teilschlüssel für einen Verwendungszweck ab
+     */
+    private byte[] deriveSubkey(byte[] salt, String purpose) throws Exception {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
+        }
+
+        String cacheKey = Base64.getEncoder().encodeToString(salt) + ":" + purpose;
+        byte[] subkey = subkeys.get(cacheKey);
+        if (subkey == null) {
+            Mac mac = macs.get();
+            mac.init(new SecretKeySpec(encryptionKey.getEncoded(), MAC_ALGORITHM));
+            mac.update(salt);
+            subkey = mac.doFinal(purpose.getBytes("UTF-8"));
+            subkeys.put(cacheKey, subkey);
+        }
+        return subkey;
+    }
+
+    private static Cipher newCipher(String algorithm) {
+        try {
+            return Cipher.getInstance(algorithm);
+        } catch (Exception e) {
+            throw new IllegalStateException("Verschlüsselungsalgorithmus nicht verfügbar: " + algorithm, e);
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Leitet aus Hauptschlüssel und Salt einen AES-Schlüssel für einen Verwendungszweck ab
+     */
+    public SecretKey deriveVaultKey(byte[] salt, String purpose) throws Exception {
+        return new SecretKeySpec(deriveSubkey(salt, purpose), KEY_ALGORITHM);
+    }
+
+    /**
+     * Verschlüsselt und authentifiziert einen einzelnen Datensatz (AES-GCM)
+     * Ergebnis: Nonce gefolgt von Chiffretext und Authentifizierungs-Tag
+     */
+    public byte[] encryptRecord(byte[] plaintext, byte[] associatedData) throws Exception {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
+        }
+        return encryptRecord(encryptionKey, plaintext, associatedData);
+    }
+
+    /**
+     * Verschlüsselt einen Datensatz mit einem abgeleiteten Schlüssel (AES-GCM)
+     */
+    public byte[] encryptRecord(SecretKey key, byte[] plaintext, byte[] associatedData) throws Exception {
+        byte[] nonce = new byte[RECORD_NONCE_LENGTH];
+        random.nextBytes(nonce);
+
+        Cipher cipher = recordCiphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(RECORD_TAG_BITS, nonce));
+        cipher.updateAAD(associatedData);
+
+        byte[] record = new byte[RECORD_NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(nonce, 0, record, 0, RECORD_NONCE_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, record, RECORD_NONCE_LENGTH);
+        return record;
+    }
+
+    /**
+     * Entschlüsselt einen mit {@link #encryptRecord} erzeugten Datensatz
+     * Wirft eine Exception, wenn Datensatz oder zugehörige Daten verändert wurden
+     */
+    public byte[] decryptRecord(byte[] record, byte[] associatedData) throws Exception {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Verschlüsselungsschlüssel ist nicht gesetzt");
+        }
+        return decryptRecord(encryptionKey, ByteBuffer.wrap(record), associatedData);
+    }
+
+    /**
+     * Entschlüsselt einen Datensatz direkt aus einem Puffer (z.B. einem eingeblendeten Dateibereich)
+     */
+    public byte[] decryptRecord(SecretKey key, ByteBuffer record, byte[] associatedData) throws Exception {
+        if (record.remaining() < RECORD_NONCE_LENGTH + RECORD_TAG_BITS / 8) {
+            throw new IllegalArgumentException("Datensatz ist zu kurz");
+        }
+
+        byte[] nonce = new byte[RECORD_NONCE_LENGTH];
+        record.get(nonce);
+
+        Cipher cipher = recordCiphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(RECORD_TAG_BITS, nonce));
+        cipher.updateAAD(associatedData);
+
+        byte[] plaintext = new byte[cipher.getOutputSize(record.remaining())];
+        int length = cipher.doFinal(record, ByteBuffer.wrap(plaintext));
+        return length == plaintext.length ? plaintext : Arrays.copyOf(plaintext, length);
     }
 
     /**
@@ -90,6 +399,6 @@ public class EncryptionManager {
      * Löscht den aktuellen Verschlüsselungsschlüssel aus dem Speicher
      */
     public void clearKey() {
-        this.encryptionKey = null;
+        setEncryptionKey(null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,358 @@
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verfahren und Parameter zur Ableitung des Hauptschlüssels aus dem Master-Passwort
+ *
+ * Unterstützt PBKDF2-HMAC-SHA256 mit einstellbarer Iterationszahl und das speicherintensive
+ * scrypt (reine Java-Implementierung nach RFC 7914). Die Parameter werden zusammen mit dem
+ * Salt im Kopf der Tresor-Datei gespeichert ({@link #ENCODED_LENGTH} Bytes), sodass sie
+ * pro Tresor an die Hardware angepasst werden können.
+ * Die frühere ungesalzene SHA-256-Ableitung wird nur noch zum Öffnen alter Tresore verwendet.
+ */
+public final class KeyDerivation {
+    public static final byte LEGACY_SHA256 = 0;
+    public static final byte PBKDF2_SHA256 = 1;
+    public static final byte SCRYPT = 2;
+
+    public static final int ENCODED_LENGTH = 13;
+    public static final int KEY_LENGTH = 32;
+
+    // Zielzeit für das Entsperren bei der automatischen Kalibrierung
+    public static final long DEFAULT_UNLOCK_MILLIS = 300;
+
+    // Grenzen für jede PBKDF2-Ableitung, auch aus dem Dateikopf: darunter zu schwach,
+    // darüber dauert das Entsperren auf üblicher Hardware mehrere Sekunden
+    private static final int MIN_PBKDF2_ITERATIONS = 100_000;
+    private static final int MAX_PBKDF2_ITERATIONS = 10_000_000;
+    private static final int PBKDF2_PROBE_ITERATIONS = 20_000;
+    private static final int MIN_SCRYPT_N = 1 << 14;
+    private static final int MAX_SCRYPT_N = 1 << 20;
+    private static final int SCRYPT_R = 8;
+    private static final int SCRYPT_P = 1;
+
+    // Kalibrierte Parameter je Verfahren, die Messung wird pro Programmstart nur einmal durchgeführt
+    private static final Map<Byte, KeyDerivation> calibrated = new ConcurrentHashMap<>();
+
+    private final byte algorithm;
+    private final int cost;
+    private final int blockSize;
+    private final int parallelism;
+
+    private KeyDerivation(byte algorithm, int cost, int blockSize, int parallelism) {
+        this.algorithm = algorithm;
+        this.cost = cost;
+        this.blockSize = blockSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Ungesalzenes SHA-256 der früheren Versionen
+     */
+    public static KeyDerivation legacySha256() {
+        return new KeyDerivation(LEGACY_SHA256, 0, 0, 0);
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 mit der angegebenen Iterationszahl
+     * Erlaubt sind {@value #MIN_PBKDF2_ITERATIONS} bis {@value #MAX_PBKDF2_ITERATIONS} Iterationen.
+     */
+    public static KeyDerivation pbkdf2(int iterations) {
+        if (iterations < MIN_PBKDF2_ITERATIONS || iterations > MAX_PBKDF2_ITERATIONS) {
+            throw new IllegalArgumentException("PBKDF2-Iterationszahl muss zwischen " + MIN_PBKDF2_ITERATIONS
+                    + " und " + MAX_PBKDF2_ITERATIONS + " liegen: " + iterations);
+        }
+        return new KeyDerivation(PBKDF2_SHA256, iterations, 0, 0);
+    }
+
+    /**
+     * scrypt mit Kostenparameter N (Zweierpotenz), Blockgröße r und Parallelität p
+     * Der Speicherbedarf beträgt 128 * r * N Bytes. Erlaubt sind nur Werte, die auch die
+     * Kalibrierung erzeugt (r bis 8, p = 1), und höchstens der halbe Heap an Speicher.
+     */
+    public static KeyDerivation scrypt(int n, int r, int p) {
+        if (n < 2 || n > MAX_SCRYPT_N || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("scrypt N muss eine Zweierpotenz bis " + MAX_SCRYPT_N + " sein");
+        }
+        if (r < 1 || r > SCRYPT_R || p != SCRYPT_P) {
+            throw new IllegalArgumentException("Ungültige scrypt-Parameter r=" + r + ", p=" + p);
+        }
+        if (128L * r * n > Runtime.getRuntime().maxMemory() / 2) {
+            throw new IllegalArgumentException("scrypt-Speicherbedarf von " + (128L * r * n >> 20)
+                    + " MiB übersteigt den verfügbaren Speicher");
+        }
+        return new KeyDerivation(SCRYPT, n, r, p);
+    }
+
+    /**
+     * Liefert Parameter, mit denen eine Ableitung auf diesem Rechner etwa die Zielzeit dauert
+     * Das Ergebnis wird pro Verfahren zwischengespeichert.
+     */
+    public static KeyDerivation calibrate(byte algorithm, long targetMillis) {
+        return calibrated.computeIfAbsent(algorithm, a -> {
+            try {
+                return a == SCRYPT ? calibrateScrypt(targetMillis) : calibratePbkdf2(targetMillis);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Kalibrierung der Schlüsselableitung fehlgeschlagen", e);
+            }
+        });
+    }
+
+    private static KeyDerivation calibratePbkdf2(long targetMillis) throws GeneralSecurityException {
+        byte[] salt = new byte[16];
+        // Kürzere Messung als jede erlaubte Ableitung, daher ohne die Prüfung in pbkdf2
+        KeyDerivation probe = new KeyDerivation(PBKDF2_SHA256, PBKDF2_PROBE_ITERATIONS, 0, 0);
+
+        // Erster Durchlauf wärmt den JIT auf und wird nicht gewertet
+        probe.deriveKey("kalibrierung", salt);
+        double millis = measure(probe, salt);
+
+        long iterations = (long) (probe.cost * targetMillis / Math.max(millis, 0.1));
+        iterations = Math.max(MIN_PBKDF2_ITERATIONS, Math.min(MAX_PBKDF2_ITERATIONS, iterations));
+        return pbkdf2((int) (iterations / 1000 * 1000));
+    }
+
+    private static KeyDerivation calibrateScrypt(long targetMillis) throws GeneralSecurityException {
+        byte[] salt = new byte[16];
+        KeyDerivation probe = scrypt(MIN_SCRYPT_N, SCRYPT_R, SCRYPT_P);
+
+        probe.deriveKey("kalibrierung", salt);
+        double millis = measure(probe, salt);
+
+        // Höchstens ein Viertel des Heaps für den scrypt-Speicher verwenden
+        long memoryLimit = Runtime.getRuntime().maxMemory() / 4;
+        int n = MIN_SCRYPT_N;
+        while (n < MAX_SCRYPT_N && millis * 2 <= targetMillis
+                && 128L * SCRYPT_R * n * 2 <= memoryLimit) {
+            n <<= 1;
+            millis *= 2;
+        }
+        return scrypt(n, SCRYPT_R, SCRYPT_P);
+    }
+
+    private static double measure(KeyDerivation derivation, byte[] salt) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        derivation.deriveKey("kalibrierung", salt);
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /**
+     * Leitet einen Schlüssel mit {@link #KEY_LENGTH} Bytes aus dem Passwort ab
+     */
+    public byte[] deriveKey(String password, byte[] salt) throws GeneralSecurityException {
+        switch (algorithm) {
+            case LEGACY_SHA256:
+                return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+            case PBKDF2_SHA256:
+                PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, KEY_LENGTH * 8);
+                try {
+                    return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+                } finally {
+                    spec.clearPassword();
+                }
+            case SCRYPT:
+                byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+                try {
+                    return scrypt(passwordBytes, salt, cost, blockSize, parallelism, KEY_LENGTH);
+                } finally {
+                    Arrays.fill(passwordBytes, (byte) 0);
+                }
+            default:
+                throw new GeneralSecurityException("Unbekannte Schlüsselableitung: " + algorithm);
+        }
+    }
+
+    /**
+     * Prüft ob es sich um die veraltete Ableitung ohne Salt handelt
+     */
+    public boolean isLegacy() {
+        return algorithm == LEGACY_SHA256;
+    }
+
+    /**
+     * Schreibt Verfahren und Parameter in einen Puffer
+     */
+    public void encode(ByteBuffer out) {
+        out.put(algorithm).putInt(cost).putInt(blockSize).putInt(parallelism);
+    }
+
+    /**
+     * Liest Verfahren und Parameter aus einem Puffer und prüft sie auf gültige Grenzen,
+     * damit eine manipulierte Datei keinen beliebig hohen Aufwand erzwingen kann
+     */
+    public static KeyDerivation decode(ByteBuffer in) throws IOException {
+        byte algorithm = in.get();
+        int cost = in.getInt();
+        int blockSize = in.getInt();
+        int parallelism = in.getInt();
+
+        try {
+            switch (algorithm) {
+                case LEGACY_SHA256:
+                    return legacySha256();
+                case PBKDF2_SHA256:
+                    return pbkdf2(cost);
+                case SCRYPT:
+                    return scrypt(cost, blockSize, parallelism);
+                default:
+                    throw new IOException("Unbekannte Schlüsselableitung: " + algorithm);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Ungültige Parameter der Schlüsselableitung: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof KeyDerivation)) return false;
+        KeyDerivation other = (KeyDerivation) o;
+        return algorithm == other.algorithm && cost == other.cost
+                && blockSize == other.blockSize && parallelism == other.parallelism;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((algorithm * 31 + cost) * 31 + blockSize) * 31 + parallelism;
+    }
+
+    @Override
+    public String toString() {
+        switch (algorithm) {
+            case PBKDF2_SHA256:
+                return "PBKDF2-HMAC-SHA256, " + cost + " Iterationen";
+            case SCRYPT:
+                return "scrypt, N=" + cost + ", r=" + blockSize + ", p=" + parallelism;
+            default:
+                return "SHA-256 (veraltet)";
+        }
+    }
+
+    // ---- scrypt (RFC 7914) ----
+
+    private static byte[] scrypt(byte[] password, byte[] salt, int n, int r, int p, int keyLength)
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        // HMAC füllt kurze Schlüssel mit Nullen auf, ein leeres Passwort entspricht daher einem Null-Byte
+        mac.init(new SecretKeySpec(password.length > 0 ? password : new byte[1], "HmacSHA256"));
+
+        int blockBytes = 128 * r;
+        byte[] blocks = pbkdf2(mac, salt, blockBytes * p);
+
+        int[] x = new int[32 * r];
+        int[] y = new int[32 * r];
+        int[] v = new int[32 * r * n];
+        int[] t = new int[16];
+        for (int i = 0; i < p; i++) {
+            roMix(blocks, i * blockBytes, r, n, x, y, t, v);
+        }
+        Arrays.fill(v, 0);
+
+        byte[] key = pbkdf2(mac, blocks, keyLength);
+        Arrays.fill(blocks, (byte) 0);
+        return key;
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 mit einer Iteration, wie von scrypt verwendet
+     */
+    private static byte[] pbkdf2(Mac mac, byte[] salt, int length) {
+        byte[] result = new byte[length];
+        byte[] counter = new byte[4];
+        int macLength = mac.getMacLength();
+
+        for (int block = 1, offset = 0; offset < length; block++, offset += macLength) {
+            counter[0] = (byte) (block >>> 24);
+            counter[1] = (byte) (block >>> 16);
+            counter[2] = (byte) (block >>> 8);
+            counter[3] = (byte) block;
+            mac.update(salt);
+            byte[] u = mac.doFinal(counter);
+            System.arraycopy(u, 0, result, offset, Math.min(macLength, length - offset));
+        }
+        return result;
+    }
+
+    private static void roMix(byte[] b, int offset, int r, int n, int[] x, int[] y, int[] t, int[] v) {
+        int words = 32 * r;
+        for (int k = 0; k < words; k++) {
+            int i = offset + k * 4;
+            x[k] = (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+        }
+
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(x, 0, v, i * words, words);
+            blockMix(x, y, t, r);
+        }
+
+        for (int i = 0; i < n; i++) {
+            int j = x[(2 * r - 1) * 16] & (n - 1);
+            int base = j * words;
+            for (int k = 0; k < words; k++) {
+                x[k] ^= v[base + k];
+            }
+            blockMix(x, y, t, r);
+        }
+
+        for (int k = 0; k < words; k++) {
+            int i = offset + k * 4;
+            b[i] = (byte) x[k];
+            b[i + 1] = (byte) (x[k] >>> 8);
+            b[i + 2] = (byte) (x[k] >>> 16);
+            b[i + 3] = (byte) (x[k] >>> 24);
+        }
+    }
+
+    private static void blockMix(int[] b, int[] y, int[] t, int r) {
+        System.arraycopy(b, (2 * r - 1) * 16, t, 0, 16);
+
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++) {
+                t[k] ^= b[i * 16 + k];
+            }
+            salsa20_8(t);
+            // Gerade Blöcke in die erste, ungerade in die zweite Hälfte
+            int target = (i % 2 == 0 ? i / 2 : r + i / 2) * 16;
+            System.arraycopy(t, 0, y, target, 16);
+        }
+        System.arraycopy(y, 0, b, 0, 32 * r);
+    }
+
+    private static void salsa20_8(int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+        int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+
+        for (int i = 0; i < 8; i += 2) {
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);   x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);  x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);    x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);  x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);  x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);  x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);  x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);  x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);    x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);   x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);    x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);   x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);  x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);  x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7); x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13); x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        b[0] += x0; b[1] += x1; b[2] += x2; b[3] += x3; b[4] += x4; b[5] += x5; b[6] += x6; b[7] += x7;
+        b[8] += x8; b[9] += x9; b[10] += x10; b[11] += x11; b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+}
@@ -0,0 +1,132 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Eingebettete Wortliste für Passphrasen (1024 Wörter, also genau 10 Bit pro Wort)
+ *
+ * Die Wörter liegen hintereinander in einem einzigen Byte-Array, eine Offset-Tabelle
+ * gibt den Anfang jedes Wortes an. Die Liste wird beim ersten Zugriff aus dem
+ * eingebetteten Text aufgebaut, nicht schon beim Laden des Generators.
+ * Kein Wort ist aus zwei anderen Wörtern der Liste zusammengesetzt.
+ */
+final class PassphraseWordlist {
+    private static final String WORDS =
+            "able acid acorn acrobat actor adapt admit adult agent agree ahead aisle alarm album alert "
+            + "alien alley allow alpha amber amend ample anchor angel anger angle ankle antler anvil apple "
+            + "apricot apron archer arena argue armchair armor army arrow artist ashes aspen atlas atom "
+            + "attic audio aunt autumn avocado avoid awake award bacon badge badger bagel baker balance "
+            + "ball balloon bamboo banana band banjo bank banner barn barrel basil basin basket batch bath "
+            + "baton beach beacon bead beagle beam bean bear beard beast beaver bedroom beef beetle bell "
+            + "belt bench berry bike bird birth biscuit bison blade blank blanket blast blaze blend "
+            + "blender bless blimp blind bliss blizzard block bloom blossom blue blunt board boat bobcat "
+            + "body boil bold bolt bonfire bonus book boost boot booth border boss bottle boulder bounce "
+            + "bouquet bowl boxer bracelet brain brake branch brass brave bread breadbox breeze brick "
+            + "bride bridge brief bright brisk broccoli brook broom brown brush bubble bucket buckle buddy "
+            + "budget buffalo bugle build bulb bulldog bundle bunny burger burrito burrow bush butter "
+            + "button buzzard cabbage cabin cable cactus cadet cage cake camel camera camp camper canal "
+            + "canary candle candy canoe canvas canyon cape caramel card cardigan cargo caribou carpet "
+            + "carrot cart case cash cashew castle catfish cattle cauldron cave cedar celery cellar cement "
+            + "chain chair chalk champ chant chapel charm chart chase cheek cheer cheese cheetah chef "
+            + "cherry chess chest chick chief child chili chime chimney chin chip chipmunk choir chord "
+            + "chorus chunk cider cinema cinnamon circle citrus city civic claim clam clap clarinet class "
+            + "claw clay clean clerk click cliff climb clock cloth cloud clover clown club clue coach "
+            + "coast cobra cobweb cocoa coconut code coffee coin comet comic compass condor cookie copper "
+            + "coral cord cork corn cosmic cotton couch cougar count cowboy coyote crab craft cranberry "
+            + "crane crate crayon cream creek crest crew cricket crisp crocodile crop crow crowd crown "
+            + "crumb crust crystal cube cucumber cupboard cupcake curl curve cushion custard cycle dagger "
+            + "daisy dance dandy dart dash data dawn deck decoy deer delta denim dentist depot desert desk "
+            + "dial diamond diary diesel dime diner dingo dinosaur disco dish ditch diver dock dolphin "
+            + "domain donkey donut door dormouse dough dove dragon dragonfly drama drawer dream dress "
+            + "drift drill drink drum duck dumpling dune dust eagle earth easel echo eclipse edge eel "
+            + "elbow elder elegant elk elm ember emblem emerald empire engine envoy epic equal eraser "
+            + "error escape essay ether event exact exit fable fabric face fairy falafel falcon fame fancy "
+            + "farm feast feather fence fern ferret ferry fiber fiddle field fig film finch fire firefly "
+            + "fish flag flame flamingo flash flask fleet flint float flock flood floor flour flute foam "
+            + "focus fog folk font forest forge fork forklift fossil fountain fox frame freckle fresh frog "
+            + "frost fruit fudge fuel fungus gadget galaxy gallon game garage garden garlic garnet gate "
+            + "gazelle gecko gem genius giant ginger giraffe glacier glass glide glitter globe glove glow "
+            + "goat goblin gold golf gondola goose gorilla gown grain granite grape graph grass gravel "
+            + "gravy green grid griffin grill grove guard guava guest guide guitar gulf gull habit hammer "
+            + "hammock hamster hand harbor harmonica harp harvest hatch haven hawk hazel heart hedge "
+            + "hedgehog helium helmet hen herb hero heron hiker hill hinge hippo hobby hockey honey hook "
+            + "hope horizon horn horse hotdog hotel hound house hug human hummus humor hurdle hut hydra "
+            + "iceberg icon igloo iguana image inch index ink inlet insect iris iron island ivory ivy "
+            + "jacket jaguar jam jar jasmine jazz jeans jelly jester jewel jigsaw jockey joke journal "
+            + "judge juggler juice jumbo jungle junior kangaroo kayak kernel ketchup kettle key kiosk kite "
+            + "kitten kiwi knee knife knight knob koala label ladder lady lagoon lake lamb lamp lance "
+            + "lantern lasagna laser latch lava lawn layer leaf ledge lemon lemonade lens leopard letter "
+            + "lettuce lever liberty light lilac lily lime linen lion liquid lizard llama lobby lobster "
+            + "locket locksmith lodge logic lollipop lotus lunar lunch lynx lyric macaw magnet mammoth "
+            + "mandolin mango manor maple marble march market marshal mask meadow medal meerkat melody "
+            + "melon memory mercury mermaid mesa metal meteor microbe midnight milk mill mineral mint "
+            + "mirror mitten moat model mohawk monkey monsoon moon moose morning mosaic moss motel moth "
+            + "motor mouse mouth muffin muffler mule mural museum music mustard myth nail napkin navy "
+            + "nebula nectar needle nest nickel night noble nomad noodle north notch novel nugget nutmeg "
+            + "oak oasis oatmeal ocean octopus olive omega omelet onion opal opera orange orbit orchard "
+            + "orchid organ ostrich otter outfit oven owl oyster paddle pagoda paint palace palm pancake "
+            + "panda panel panther papaya paper parade parcel parrot parsley pasta pastel patch path "
+            + "peacock peanut pearl pebble pecan pedal pelican pencil penguin pepper pepperoni petal "
+            + "pharaoh piano pickle picnic pigeon pillow pilot pine pinecone pinwheel pioneer pirate "
+            + "pistol pizza planet plank plasma plate platypus plaza plum plume pocket poem polar pond "
+            + "pony poodle poppy porch potato pottery pouch powder prairie pretzel prism prize puddle "
+            + "puffin pulse pumpkin puppet puzzle pyramid quail quartz queen quest quilt quiver quokka "
+            + "rabbit raccoon radar radio radish raft rain rainbow raisin rake ranch raven razor recipe "
+            + "reef reindeer relay relic remedy rhino rhubarb ribbon rice riddle ridge rifle ring ripple "
+            + "river road robin robot rocket rodeo roof rookie rose rover ruby rudder rugby ruler saddle "
+            + "safari saffron saga sail sailor salad salmon salt sand sandal sardine satin saucer sauna "
+            + "scale scallop scarf school scooter scout screen scroll seahorse seal season seed shadow "
+            + "shark sheep shelf shell sherbet shield ship shirt shore shovel shrimp siren sketch skill "
+            + "skillet skunk sky slate sled slope smoke snail snake snorkel snowman sock sofa solar "
+            + "sombrero sonar sonic soup spark sparrow spatula spear spice spider spinach spiral splash "
+            + "sponge spoon spring sprout square squid squirrel stable stadium stage stamp star starling "
+            + "statue steam steel stem stereo stick stone storm stove straw stream street stripe strudel "
+            + "studio sugar suit summit sun sunflower surf swan sweater swing sword syrup table tablet "
+            + "taco tadpole tail talent tango tank tape target tavern taxi teacup teapot temple tennis "
+            + "tent thimble thorn thread throne thunder ticket tiger timber toast tomato tool topaz torch "
+            + "tornado tortoise totem toucan towel tower tractor trail train tram trapeze tree treetop "
+            + "trellis tribe tricycle";
+
+    private PassphraseWordlist() {
+    }
+
+    static int size() {
+        return Packed.offsets.length - 1;
+    }
+
+    /**
+     * Hängt das Wort mit diesem Index an, optional mit großem Anfangsbuchstaben
+     */
+    static void appendWord(int index, boolean capitalize, StringBuilder out) {
+        byte[] blob = Packed.blob;
+        int start = Packed.offsets[index];
+        int end = Packed.offsets[index + 1];
+        for (int i = start; i < end; i++) {
+            char c = (char) blob[i];
+            out.append(capitalize && i == start ? Character.toUpperCase(c) : c);
+        }
+    }
+
+    /**
+     * Gepackte Wörter, erst bei der ersten Passphrase initialisiert
+     */
+    private static final class Packed {
+        static final byte[] blob;
+        static final int[] offsets;
+
+        static {
+            String[] words = WORDS.split(" ");
+            offsets = new int[words.length + 1];
+            int length = 0;
+            for (int i = 0; i < words.length; i++) {
+                offsets[i] = length;
+                length += words[i].length();
+            }
+            offsets[words.length] = length;
+
+            blob = new byte[length];
+            for (int i = 0; i < words.length; i++) {
+                byte[] word = words[i].getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(word, 0, blob, offsets[i], word.length);
+            }
+        }
+    }
+}
@@ -5,6 +5,8 @@ import java.util.Date;
  * Enthält alle Informationen zu einem gespeicherten Passwort
  */
 public class PasswordEntry {
+    // Eindeutige, beim Speichern erhaltene ID, 0 solange der Tresor keine vergeben hat
+    private long id;
     private String title;
     private String username;
     private String password;
@@ -24,6 +26,14 @@ public class PasswordEntry {
     }
 
     // Getter und Setter
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -66,7 +76,7 @@ public class PasswordEntry {
 
     @Override
     public String toString() {
-        return String.format("PasswordEntry{title='%s', username='%s', website='%s', created=%s}",
-                title, username, website, created);
+        return String.format("PasswordEntry{id=%d, title='%s', username='%s', website='%s', created=%s}",
+                id, title, username, website, created);
     }
 }
\ No newline at end of file
@@ -1,7 +1,17 @@
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Sichere Passwort-Generierung mit konfigurierbaren Optionen
+ * Jeder Thread erzeugt Zufallszahlen mit einem eigenen, aus der Systemquelle geseedeten
+ * DRBG, parallel generierende Threads teilen sich daher keine synchronisierte Quelle.
  */
 public class PasswordGenerator {
     private static final String UPPERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -9,7 +19,149 @@ public class PasswordGenerator {
     private static final String NUMBERS = "0123456789";
     private static final String SYMBOLS = "!@#$%^&*()_+-=[]{}|;:,.<>?";
 
-    private static final SecureRandom random = new SecureRandom();
+    // Nach so vielen Zufallsbytes wird der DRBG eines Threads aus der Systemquelle nachgeseedet
+    private static final long RESEED_INTERVAL_BYTES = 1 << 20;
+
+    // Passwörter pro Teilaufgabe bei paralleler Generierung
+    private static final int PARALLEL_CHUNK_SIZE = 4096;
+
+    private static final ThreadLocal<ThreadRandom> threadRandom = ThreadLocal.withInitial(ThreadRandom::new);
+
+    // Zeichenvorrat je Kombination der vier Kategorien (Bitmaske), einmalig aufgebaut
+    private static final char[][] CHARSETS = new char[16][];
+
+    static {
+        String[] categories = {UPPERCASE, LOWERCASE, NUMBERS, SYMBOLS};
+        for (int mask = 1; mask < CHARSETS.length; mask++) {
+            StringBuilder charset = new StringBuilder();
+            for (int category = 0; category < categories.length; category++) {
+                if ((mask & (1 << category)) != 0) {
+                    charset.append(categories[category]);
+                }
+            }
+            CHARSETS[mask] = charset.toString().toCharArray();
+        }
+    }
+
+    /**
+     * Unveränderliche Vorgaben für generierte Passwörter mit vorberechnetem Zeichenvorrat
+     */
+    public static final class Policy {
+        private final int length;
+        private final char[] charset;
+        private final char[][] categories;
+
+        public Policy(boolean includeUppercase, boolean includeLowercase,
+                      boolean includeNumbers, boolean includeSymbols, int length) {
+            if (length < 1) {
+                throw new IllegalArgumentException("Passwort-Länge muss mindestens 1 sein");
+            }
+
+            int mask = (includeUppercase ? 1 : 0) | (includeLowercase ? 2 : 0)
+                    | (includeNumbers ? 4 : 0) | (includeSymbols ? 8 : 0);
+            if (mask == 0) {
+                throw new IllegalArgumentException("Mindestens eine Zeichenart muss ausgewählt werden");
+            }
+
+            this.length = length;
+            this.charset = CHARSETS[mask];
+            this.categories = new char[Integer.bitCount(mask)][];
+            int index = 0;
+            for (int category = 0; category < 4; category++) {
+                if ((mask & (1 << category)) != 0) {
+                    categories[index++] = CHARSETS[1 << category];
+                }
+            }
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Liefert gleichverteilte Zufallszahlen aus blockweise bezogenen Zufallsbytes
+     * Werte oberhalb des größten Vielfachen der Obergrenze werden verworfen, damit
+     * kein Zeichen bevorzugt wird. Nicht thread-sicher.
+     */
+    private static final class RandomBytes {
+        private static final int MAX_BLOCK_SIZE = 8192;
+
+        private final ThreadRandom source;
+        private final byte[] block;
+        private int position;
+
+        RandomBytes(ThreadRandom source, long expectedBytes) {
+            this.source = source;
+            this.block = new byte[(int) Math.min(MAX_BLOCK_SIZE, expectedBytes)];
+            this.position = block.length;
+        }
+
+        int nextInt(int bound) {
+            if (bound <= 256) {
+                int limit = 256 - 256 % bound;
+                int value;
+                do {
+                    value = nextByte();
+                } while (value >= limit);
+                return value % bound;
+            }
+            if (bound <= 65536) {
+                int limit = 65536 - 65536 % bound;
+                int value;
+                do {
+                    value = nextByte() << 8 | nextByte();
+                } while (value >= limit);
+                return value % bound;
+            }
+            return source.random.nextInt(bound);
+        }
+
+        private int nextByte() {
+            if (position == block.length) {
+                source.nextBytes(block);
+                position = 0;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        void clear() {
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    /**
+     * DRBG eines einzelnen Threads, wird nach {@link #RESEED_INTERVAL_BYTES} nachgeseedet
+     */
+    private static final class ThreadRandom {
+        private final SecureRandom random;
+        private long bytesSinceReseed;
+
+        ThreadRandom() {
+            SecureRandom drbg;
+            try {
+                drbg = SecureRandom.getInstance("DRBG",
+                        DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+            } catch (NoSuchAlgorithmException e) {
+                System.err.println("DRBG nicht verfügbar, verwende Standard-SecureRandom: " + e.getMessage());
+                drbg = new SecureRandom();
+            }
+            this.random = drbg;
+        }
+
+        void nextBytes(byte[] bytes) {
+            if (bytesSinceReseed >= RESEED_INTERVAL_BYTES) {
+                try {
+                    random.reseed();
+                } catch (UnsupportedOperationException e) {
+                    // Quelle ohne Nachseeden, sie verwaltet ihren Zustand selbst
+                }
+                bytesSinceReseed = 0;
+            }
+            random.nextBytes(bytes);
+            bytesSinceReseed += bytes.length;
+        }
+    }
 
     /**
      * Generiert ein zufälliges Passwort mit den angegebenen Parametern
@@ -23,46 +175,169 @@ public class PasswordGenerator {
      */
     public static String generatePassword(boolean includeUppercase, boolean includeLowercase,
                                           boolean includeNumbers, boolean includeSymbols, int length) {
+        Policy policy = new Policy(includeUppercase, includeLowercase, includeNumbers, includeSymbols, length);
+        return generateBatch(policy, 1).get(0);
+    }
+
+    /**
+     * Generiert viele Passwörter nach derselben Richtlinie
+     * Zufallsbytes werden blockweise bezogen, jedes Passwort entsteht im selben Puffer.
+     */
+    public static List<String> generateBatch(Policy policy, int count) {
+        List<String> passwords = new ArrayList<>(count);
+        generateBatch(policy, count, buffer -> passwords.add(new String(buffer)));
+        return passwords;
+    }
+
+    /**
+     * Generiert viele Passwörter parallel im gemeinsamen ForkJoinPool
+     * Die Anzahl wird in Teilaufgaben zerlegt, jede nutzt den DRBG ihres Worker-Threads.
+     */
+    public static List<String> generateBatchParallel(Policy policy, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Anzahl darf nicht negativ sein");
+        }
 
-        if (length < 1) {
-            throw new IllegalArgumentException("Passwort-Länge muss mindestens 1 sein");
+        int chunks = (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> generateBatch(policy,
+                        Math.min(PARALLEL_CHUNK_SIZE, count - chunk * PARALLEL_CHUNK_SIZE)))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Generiert viele Passwörter, ohne Strings zu erzeugen
+     * Der Empfänger erhält jedes Passwort im selben Puffer, der danach überschrieben
+     * und am Ende gelöscht wird; er muss die Zeichen also sofort weiterverarbeiten.
+     */
+    public static void generateBatch(Policy policy, int count, Consumer<char[]> sink) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Anzahl darf nicht negativ sein");
         }
 
-        StringBuilder charset = new StringBuilder();
+        RandomBytes randomBytes = new RandomBytes(threadRandom.get(), count * policy.length * 2L + 16);
+        char[] buffer = new char[policy.length];
+        try {
+            for (int i = 0; i < count; i++) {
+                fill(policy, buffer, randomBytes);
+                sink.accept(buffer);
+            }
+        } finally {
+            Arrays.fill(buffer, '\0');
+            randomBytes.clear();
+        }
+    }
 
-        if (includeUppercase) charset.append(UPPERCASE);
-        if (includeLowercase) charset.append(LOWERCASE);
-        if (includeNumbers) charset.append(NUMBERS);
-        if (includeSymbols) charset.append(SYMBOLS);
+    /**
+     * Füllt den Puffer mit einem Passwort: je ein Zeichen jeder gewählten Kategorie,
+     * der Rest aus dem gesamten Zeichenvorrat, danach gemischt
+     */
+    private static void fill(Policy policy, char[] buffer, RandomBytes randomBytes) {
+        int position = 0;
+        for (char[] category : policy.categories) {
+            if (position == buffer.length) {
+                break;
+            }
+            buffer[position++] = category[randomBytes.nextInt(category.length)];
+        }
 
-        if (charset.length() == 0) {
-            throw new IllegalArgumentException("Mindestens eine Zeichenart muss ausgewählt werden");
+        char[] charset = policy.charset;
+        while (position < buffer.length) {
+            buffer[position++] = charset[randomBytes.nextInt(charset.length)];
         }
 
-        StringBuilder password = new StringBuilder();
+        // Fisher-Yates Shuffle Algorithmus
+        for (int i = buffer.length - 1; i > 0; i--) {
+            int j = randomBytes.nextInt(i + 1);
+            char temp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = temp;
+        }
+    }
 
-        // Stelle sicher, dass mindestens ein Zeichen jeder gewählten Kategorie enthalten ist
-        if (includeUppercase && length > 0) {
-            password.append(UPPERCASE.charAt(random.nextInt(UPPERCASE.length())));
+    /**
+     * Groß- und Kleinschreibung der Wörter einer Passphrase
+     */
+    public enum Capitalization {
+        NONE("klein"),
+        FIRST_LETTER("Wortanfang groß"),
+        RANDOM("zufällig");
+
+        private final String displayName;
+
+        Capitalization(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
         }
-        if (includeLowercase && length > password.length()) {
-            password.append(LOWERCASE.charAt(random.nextInt(LOWERCASE.length())));
+    }
+
+    /**
+     * Generiert eine Passphrase aus zufällig gezogenen Wörtern der eingebetteten Wortliste
+     *
+     * @param wordCount Anzahl der Wörter
+     * @param separator Trennzeichen zwischen den Wörtern, siehe {@link #isValidSeparator}
+     * @param capitalization Groß- und Kleinschreibung der Wörter
+     * @return Generierte Passphrase
+     */
+    public static String generatePassphrase(int wordCount, String separator, Capitalization capitalization) {
+        if (wordCount < 1) {
+            throw new IllegalArgumentException("Passphrase muss mindestens ein Wort enthalten");
         }
-        if (includeNumbers && length > password.length()) {
-            password.append(NUMBERS.charAt(random.nextInt(NUMBERS.length())));
+        if (!isValidSeparator(separator)) {
+            throw new IllegalArgumentException("Trennzeichen darf nicht leer sein und keine Buchstaben enthalten");
         }
-        if (includeSymbols && length > password.length()) {
-            password.append(SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+
+        RandomBytes randomBytes = new RandomBytes(threadRandom.get(), wordCount * 3L);
+        StringBuilder passphrase = new StringBuilder(wordCount * 8);
+        try {
+            int words = PassphraseWordlist.size();
+            for (int i = 0; i < wordCount; i++) {
+                if (i > 0 && separator != null) {
+                    passphrase.append(separator);
+                }
+                boolean capitalize = capitalization == Capitalization.FIRST_LETTER
+                        || (capitalization == Capitalization.RANDOM && randomBytes.nextInt(2) == 1);
+                PassphraseWordlist.appendWord(randomBytes.nextInt(words), capitalize, passphrase);
+            }
+            return passphrase.toString();
+        } finally {
+            randomBytes.clear();
         }
+    }
 
-        // Fülle den Rest mit zufälligen Zeichen aus dem gesamten Charset
-        while (password.length() < length) {
-            int index = random.nextInt(charset.length());
-            password.append(charset.charAt(index));
+    /**
+     * Prüft, ob sich die Wörter einer Passphrase mit diesem Trennzeichen eindeutig trennen lassen
+     * Ohne Trennzeichen oder mit Buchstaben darin könnten verschiedene Wortfolgen dieselbe
+     * Passphrase ergeben, die angegebene Entropie wäre dann zu hoch.
+     */
+    public static boolean isValidSeparator(String separator) {
+        if (separator == null || separator.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < separator.length(); i++) {
+            if (Character.isLetter(separator.charAt(i))) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        // Mische das Passwort, um die Reihenfolge zu randomisieren
-        return shuffleString(password.toString());
+    /**
+     * Exakte Entropie einer Passphrase in Bit: Wortwahl und ggf. zufällige Großschreibung
+     * Das Trennzeichen ist fest gewählt und trägt nichts bei.
+     */
+    public static double passphraseEntropyBits(int wordCount, Capitalization capitalization) {
+        double bitsPerWord = Math.log(PassphraseWordlist.size()) / Math.log(2);
+        if (capitalization == Capitalization.RANDOM) {
+            bitsPerWord += 1;
+        }
+        return wordCount * bitsPerWord;
     }
 
     /**
@@ -86,50 +361,11 @@ public class PasswordGenerator {
         return generatePassword(true, true, true, true, length);
     }
 
-    /**
-     * Mischt die Zeichen eines Strings zufällig
-     */
-    private static String shuffleString(String input) {
-        char[] characters = input.toCharArray();
-
-        // Fisher-Yates Shuffle Algorithmus
-        for (int i = characters.length - 1; i > 0; i--) {
-            int j = random.nextInt(i + 1);
-            char temp = characters[i];
-            characters[i] = characters[j];
-            characters[j] = temp;
-        }
-
-        return new String(characters);
-    }
-
     /**
      * Bewertet die Stärke eines Passworts (0-100)
      */
     public static int calculatePasswordStrength(String password) {
-        if (password == null || password.isEmpty()) {
-            return 0;
-        }
-
-        int score = 0;
-
-        // Länge bewerten
-        if (password.length() >= 8) score += 25;
-        if (password.length() >= 12) score += 25;
-        if (password.length() >= 16) score += 10;
-
-        // Zeichenvielfalt bewerten
-        boolean hasUpper = password.matches(".*[A-Z].*");
-        boolean hasLower = password.matches(".*[a-z].*");
-        boolean hasNumber = password.matches(".*[0-9].*");
-        boolean hasSymbol = password.matches(".*[!@#$%^&*()_+\\-=\\[\\]{}|;:,.<>?].*");
-
-        if (hasUpper) score += 10;
-        if (hasLower) score += 10;
-        if (hasNumber) score += 10;
-        if (hasSymbol) score += 10;
-
-        return Math.min(100, score);
+        return PasswordStrength.score(password);
     }
 
     /**
@@ -13,19 +13,28 @@ public class PasswordGeneratorDialog extends JDialog {
     private JCheckBox numbersBox;
     private JCheckBox symbolsBox;
     private JSpinner lengthSpinner;
+    private JRadioButton charactersRadio;
+    private JRadioButton passphraseRadio;
+    private JSpinner wordCountSpinner;
+    private JComboBox<String> separatorBox;
+    private JComboBox<PasswordGenerator.Capitalization> capitalizationBox;
+    private JPanel optionCards;
     private JTextField generatedPasswordField;
     private JLabel strengthLabel;
     private JProgressBar strengthBar;
 
     private String lastGeneratedPassword = "";
 
+    // Wird bei jeder Generierung wiederverwendet
+    private final PasswordStrength.Analysis strengthAnalysis = new PasswordStrength.Analysis();
+
     public PasswordGeneratorDialog(JFrame parent) {
         super(parent, "Passwort Generator", true);
         initializeComponents();
         layoutComponents();
         setupEventListeners();
 
-        setSize(450, 350);
+        setSize(450, 400);
         setLocationRelativeTo(parent);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         setResizable(false);
@@ -45,6 +54,21 @@ public class PasswordGeneratorDialog extends JDialog {
         lengthSpinner = new JSpinner(new SpinnerNumberModel(16, 4, 128, 1));
         ((JSpinner.DefaultEditor) lengthSpinner.getEditor()).getTextField().setEditable(false);
 
+        // Art: Zeichen oder Passphrase
+        charactersRadio = new JRadioButton("Zeichen", true);
+        passphraseRadio = new JRadioButton("Passphrase");
+        ButtonGroup modeGroup = new ButtonGroup();
+        modeGroup.add(charactersRadio);
+        modeGroup.add(passphraseRadio);
+
+        // Passphrase-Optionen
+        wordCountSpinner = new JSpinner(new SpinnerNumberModel(5, 3, 12, 1));
+        ((JSpinner.DefaultEditor) wordCountSpinner.getEditor()).getTextField().setEditable(false);
+        separatorBox = new JComboBox<>(new String[]{"-", " ", ".", "_", "+"});
+        separatorBox.setEditable(true);
+        capitalizationBox = new JComboBox<>(PasswordGenerator.Capitalization.values());
+        capitalizationBox.setSelectedItem(PasswordGenerator.Capitalization.FIRST_LETTER);
+
         // Ergebnis-Textfeld
         generatedPasswordField = new JTextField();
         generatedPasswordField.setEditable(false);
@@ -73,23 +97,48 @@ public class PasswordGeneratorDialog extends JDialog {
         titleLabel.setFont(titleLabel.getFont().deriveFont(Font.BOLD, 16f));
         mainPanel.add(titleLabel, gbc);
 
-        // Optionen-Panel
+        // Art-Panel
         gbc.gridy = 1; gbc.anchor = GridBagConstraints.WEST;
+        JPanel modePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        modePanel.add(new JLabel("Art:"));
+        modePanel.add(charactersRadio);
+        modePanel.add(passphraseRadio);
+        mainPanel.add(modePanel, gbc);
+
+        // Optionen-Panel
         JPanel optionsPanel = new JPanel(new GridLayout(4, 1, 5, 5));
         optionsPanel.setBorder(BorderFactory.createTitledBorder("Zeichen-Optionen"));
         optionsPanel.add(uppercaseBox);
         optionsPanel.add(lowercaseBox);
         optionsPanel.add(numbersBox);
         optionsPanel.add(symbolsBox);
-        mainPanel.add(optionsPanel, gbc);
 
         // Längen-Panel
-        gbc.gridy = 2;
         JPanel lengthPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         lengthPanel.add(new JLabel("Passwort-Länge:"));
         lengthPanel.add(lengthSpinner);
         lengthPanel.add(new JLabel("Zeichen"));
-        mainPanel.add(lengthPanel, gbc);
+
+        JPanel charactersPanel = new JPanel(new BorderLayout());
+        charactersPanel.add(optionsPanel, BorderLayout.CENTER);
+        charactersPanel.add(lengthPanel, BorderLayout.SOUTH);
+
+        // Passphrase-Panel
+        JPanel passphrasePanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        passphrasePanel.setBorder(BorderFactory.createTitledBorder("Passphrase-Optionen"));
+        passphrasePanel.add(new JLabel("Anzahl Wörter:"));
+        passphrasePanel.add(wordCountSpinner);
+        passphrasePanel.add(new JLabel("Trennzeichen:"));
+        passphrasePanel.add(separatorBox);
+        passphrasePanel.add(new JLabel("Großschreibung:"));
+        passphrasePanel.add(capitalizationBox);
+
+        // Je nach Art nur die passenden Optionen zeigen
+        gbc.gridy = 2;
+        optionCards = new JPanel(new CardLayout());
+        optionCards.add(charactersPanel, "Zeichen");
+        optionCards.add(passphrasePanel, "Passphrase");
+        mainPanel.add(optionCards, gbc);
 
         // Ergebnis-Panel
         gbc.gridy = 3; gbc.fill = GridBagConstraints.HORIZONTAL; gbc.weightx = 1.0;
@@ -137,10 +186,58 @@ public class PasswordGeneratorDialog extends JDialog {
         symbolsBox.addActionListener(regenerateListener);
 
         lengthSpinner.addChangeListener(e -> generatePassword());
+
+        charactersRadio.addActionListener(e -> updateMode());
+        passphraseRadio.addActionListener(e -> updateMode());
+        wordCountSpinner.addChangeListener(e -> generatePassword());
+        separatorBox.addActionListener(regenerateListener);
+        capitalizationBox.addActionListener(regenerateListener);
+    }
+
+    private void updateMode() {
+        ((CardLayout) optionCards.getLayout()).show(optionCards,
+                passphraseRadio.isSelected() ? "Passphrase" : "Zeichen");
+        generatePassword();
+    }
+
+    private void generatePassphrase() {
+        int wordCount = (Integer) wordCountSpinner.getValue();
+        Object selectedSeparator = separatorBox.getSelectedItem();
+        String separator = selectedSeparator != null ? selectedSeparator.toString() : "";
+        PasswordGenerator.Capitalization capitalization =
+                (PasswordGenerator.Capitalization) capitalizationBox.getSelectedItem();
+
+        // Die Wörter müssen eindeutig trennbar bleiben, sonst stimmt die Entropie nicht
+        if (!PasswordGenerator.isValidSeparator(separator)) {
+            generatedPasswordField.setText("Trennzeichen ohne Buchstaben angeben!");
+            strengthLabel.setText("Stärke: Ungültig");
+            strengthLabel.setToolTipText(null);
+            strengthBar.setValue(0);
+            strengthBar.setForeground(Color.RED);
+            return;
+        }
+
+        String passphrase = PasswordGenerator.generatePassphrase(wordCount, separator, capitalization);
+        generatedPasswordField.setText(passphrase);
+        lastGeneratedPassword = passphrase;
+
+        // Die Entropie ist durch Wortliste und Wortanzahl exakt bekannt
+        double entropyBits = PasswordGenerator.passphraseEntropyBits(wordCount, capitalization);
+        int strength = PasswordStrength.scoreOf(entropyBits);
+        strengthLabel.setText(String.format("Stärke: %s (%d%%, %.0f Bit exakt)",
+                PasswordGenerator.getPasswordStrengthDescription(strength), strength, entropyBits));
+        strengthLabel.setToolTipText(null);
+        strengthBar.setValue(strength);
+        updateStrengthColor(strength);
     }
 
     private void generatePassword() {
         try {
+            if (passphraseRadio.isSelected()) {
+                generatePassphrase();
+                return;
+            }
+
             boolean includeUppercase = uppercaseBox.isSelected();
             boolean includeLowercase = lowercaseBox.isSelected();
             boolean includeNumbers = numbersBox.isSelected();
@@ -175,12 +272,19 @@ public class PasswordGeneratorDialog extends JDialog {
     }
 
     private void updatePasswordStrength(String password) {
-        int strength = PasswordGenerator.calculatePasswordStrength(password);
+        // Das Passwort ist gleichverteilt aus dem Zeichenvorrat gezogen, eine Mustersuche ist unnötig
+        PasswordStrength.analyze(password, strengthAnalysis);
+        int strength = strengthAnalysis.getScore();
         String description = PasswordGenerator.getPasswordStrengthDescription(strength);
 
-        strengthLabel.setText("Stärke: " + description + " (" + strength + "%)");
+        strengthLabel.setText(String.format("Stärke: %s (%d%%, %.0f Bit)",
+                description, strength, strengthAnalysis.getEntropyBits()));
+        strengthLabel.setToolTipText(null);
         strengthBar.setValue(strength);
+        updateStrengthColor(strength);
+    }
 
+    private void updateStrengthColor(int strength) {
         // Farbe basierend auf Stärke setzen
         if (strength < 30) {
             strengthBar.setForeground(Color.RED);
@@ -261,6 +365,10 @@ public class PasswordGeneratorDialog extends JDialog {
      * Setzt vordefinierte Einstellungen für verschiedene Passwort-Typen
      */
     public void setPasswordType(PasswordType type) {
+        charactersRadio.setSelected(type != PasswordType.PASSPHRASE);
+        passphraseRadio.setSelected(type == PasswordType.PASSPHRASE);
+        ((CardLayout) optionCards.getLayout()).show(optionCards,
+                type == PasswordType.PASSPHRASE ? "Passphrase" : "Zeichen");
         switch (type) {
             case SIMPLE:
                 uppercaseBox.setSelected(true);
@@ -290,6 +398,11 @@ public class PasswordGeneratorDialog extends JDialog {
                 symbolsBox.setSelected(false);
                 lengthSpinner.setValue(16);
                 break;
+            case PASSPHRASE:
+                wordCountSpinner.setValue(6);
+                separatorBox.setSelectedItem("-");
+                capitalizationBox.setSelectedItem(PasswordGenerator.Capitalization.FIRST_LETTER);
+                break;
         }
         generatePassword();
     }
@@ -301,6 +414,7 @@ public class PasswordGeneratorDialog extends JDialog {
         SIMPLE,      // Buchstaben + Zahlen, 12 Zeichen
         COMPLEX,     // Alle Zeichen, 16 Zeichen
         SECURE,      // Alle Zeichen, 24 Zeichen
-        ALPHANUMERIC // Nur Buchstaben + Zahlen, 16 Zeichen
+        ALPHANUMERIC, // Nur Buchstaben + Zahlen, 16 Zeichen
+        PASSPHRASE    // Sechs Wörter aus der Wortliste
     }
 }
\ No newline at end of file
@@ -1,11 +1,11 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.datatransfer.StringSelection;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Hauptklasse des sicheren Passwort-Managers
@@ -14,8 +14,12 @@ import java.util.List;
 public class PasswordManager extends JFrame {
     // Komponenten
     private JTable passwordTable;
-    private DefaultTableModel tableModel;
+    private PasswordTableModel tableModel;
     private JTextField searchField;
+    private JPopupMenu completionPopup;
+    private JList<String> completionList;
+    private DefaultListModel<String> completionModel;
+    private SearchPipeline searchPipeline;
     private JLabel statusLabel;
 
     // Manager-Klassen
@@ -24,9 +28,23 @@ public class PasswordManager extends JFrame {
     // Status
     private boolean isLoggedIn = false;
 
+    // Zuletzt überwachtes Speichern im Hintergrund, damit ein Fehler nur einmal gemeldet wird
+    private CompletableFuture<Boolean> watchedSave;
+
+    // Höchstzahl angezeigter Einträge bei der unscharfen Suche
+    private static final int FUZZY_RESULT_LIMIT = 50;
+
+    // Höchstzahl der Vorschläge unter dem Suchfeld
+    private static final int COMPLETION_LIMIT = 8;
+
+    // Änderungen innerhalb dieser Zeit werden im Hintergrund gemeinsam gespeichert
+    private static final long WRITE_BEHIND_MILLIS = 500;
+
     public PasswordManager() {
         vaultManager = new VaultManager();
+        vaultManager.setWriteBehindDelay(WRITE_BEHIND_MILLIS);
         initializeGUI();
+        searchPipeline = new SearchPipeline(this::findPasswords, tableModel::setEntries);
         showLoginDialog();
     }
 
@@ -160,12 +178,28 @@ public class PasswordManager extends JFrame {
         searchPanel.add(new JLabel("Suchen:"));
         searchField = new JTextField(25);
         searchField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleCompletionKey(e);
+            }
+
             @Override
             public void keyReleased(KeyEvent e) {
+                if (isCompletionKey(e)) {
+                    return;
+                }
                 filterPasswords();
+                updateCompletions();
+            }
+        });
+        searchField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                hideCompletions();
             }
         });
         searchPanel.add(searchField);
+        createCompletionPopup();
 
         // Button-Panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -194,14 +228,110 @@ public class PasswordManager extends JFrame {
         add(mainPanel);
     }
 
-    private void createPasswordTable() {
-        String[] columns = {"Titel", "Benutzername", "Website", "Erstellt", "Aktionen"};
-        tableModel = new DefaultTableModel(columns, 0) {
+    /**
+     * Erstellt die Vorschlagsliste unter dem Suchfeld
+     * Das Popup nimmt keinen Fokus an, die Bedienung läuft über die Tasten im Suchfeld.
+     */
+    private void createCompletionPopup() {
+        completionModel = new DefaultListModel<>();
+        completionList = new JList<>(completionModel);
+        completionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        completionList.setFocusable(false);
+        completionList.addMouseListener(new MouseAdapter() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 4; // Nur Actions-Spalte editierbar
+            public void mouseClicked(MouseEvent e) {
+                acceptCompletion();
             }
-        };
+        });
+
+        completionPopup = new JPopupMenu();
+        completionPopup.setFocusable(false);
+        completionPopup.add(completionList);
+    }
+
+    /**
+     * Fragt die Vorschläge zur aktuellen Eingabe im Hintergrund ab
+     */
+    private void updateCompletions() {
+        searchPipeline.complete(searchField.getText(),
+                prefix -> vaultManager.completeSearch(prefix, COMPLETION_LIMIT),
+                this::showCompletions);
+    }
+
+    /**
+     * Zeigt die Vorschläge zu einer Eingabe an
+     */
+    private void showCompletions(String prefix, List<String> completions) {
+        // Kein Popup, wenn die Eingabe bereits der einzige Vorschlag ist
+        if (completions.isEmpty()
+                || (completions.size() == 1 && completions.get(0).equalsIgnoreCase(prefix.trim()))) {
+            completionPopup.setVisible(false);
+            return;
+        }
+
+        completionModel.clear();
+        for (String completion : completions) {
+            completionModel.addElement(completion);
+        }
+        completionList.setVisibleRowCount(completions.size());
+        completionList.setFixedCellWidth(searchField.getWidth());
+        completionPopup.pack();
+        if (!completionPopup.isVisible()) {
+            completionPopup.show(searchField, 0, searchField.getHeight());
+        }
+    }
+
+    /**
+     * Bedient die Vorschlagsliste mit Pfeiltasten, Enter und Escape
+     */
+    private void handleCompletionKey(KeyEvent e) {
+        if (!completionPopup.isVisible()) {
+            return;
+        }
+
+        int keyCode = e.getKeyCode();
+        if (keyCode == KeyEvent.VK_DOWN || keyCode == KeyEvent.VK_UP) {
+            int step = keyCode == KeyEvent.VK_DOWN ? 1 : -1;
+            int index = Math.floorMod(completionList.getSelectedIndex() + step, completionModel.getSize());
+            completionList.setSelectedIndex(index);
+            e.consume();
+        } else if (keyCode == KeyEvent.VK_ENTER) {
+            acceptCompletion();
+            e.consume();
+        } else if (keyCode == KeyEvent.VK_ESCAPE) {
+            hideCompletions();
+            e.consume();
+        }
+    }
+
+    private boolean isCompletionKey(KeyEvent e) {
+        int keyCode = e.getKeyCode();
+        return keyCode == KeyEvent.VK_DOWN || keyCode == KeyEvent.VK_UP
+                || keyCode == KeyEvent.VK_ENTER || keyCode == KeyEvent.VK_ESCAPE;
+    }
+
+    /**
+     * Übernimmt den gewählten Vorschlag in das Suchfeld
+     */
+    private void acceptCompletion() {
+        String completion = completionList.getSelectedValue();
+        hideCompletions();
+        if (completion != null) {
+            searchField.setText(completion);
+            updatePasswordTable();
+        }
+    }
+
+    /**
+     * Schließt die Vorschlagsliste, noch ausstehende Vorschläge öffnen sie nicht wieder
+     */
+    private void hideCompletions() {
+        searchPipeline.cancelCompletions();
+        completionPopup.setVisible(false);
+    }
+
+    private void createPasswordTable() {
+        tableModel = new PasswordTableModel();
 
         passwordTable = new JTable(tableModel);
         passwordTable.setRowHeight(35);
@@ -291,6 +421,7 @@ public class PasswordManager extends JFrame {
             if (vaultManager.addPassword(newEntry)) {
                 updatePasswordTable();
                 updateStatusBar();
+                watchPendingSave();
                 showInfo("Passwort erfolgreich hinzugefügt!");
             } else {
                 showError("Fehler beim Speichern des Passworts!");
@@ -374,6 +505,7 @@ public class PasswordManager extends JFrame {
                 if (vaultManager.addPassword(entry)) {
                     updatePasswordTable();
                     updateStatusBar();
+                    watchPendingSave();
                     showInfo("Passwort erfolgreich gespeichert!");
                 }
             }
@@ -396,24 +528,31 @@ public class PasswordManager extends JFrame {
         autoDialog.setVisible(true);
     }
 
+    /**
+     * Zeigt die Treffer zum aktuellen Suchbegriff ohne Verzögerung an
+     */
     private void updatePasswordTable() {
-        tableModel.setRowCount(0);
-
-        List<PasswordEntry> passwords = vaultManager.searchPasswords(searchField.getText());
-
-        for (PasswordEntry entry : passwords) {
-            tableModel.addRow(new Object[]{
-                    entry.getTitle(),
-                    entry.getUsername(),
-                    entry.getWebsite(),
-                    formatDate(entry.getCreated()),
-                    "Aktionen"
-            });
-        }
+        searchPipeline.searchNow(searchField.getText());
     }
 
+    /**
+     * Sucht nach einer Tipp-Pause im Hintergrund
+     */
     private void filterPasswords() {
-        updatePasswordTable();
+        searchPipeline.schedule(searchField.getText());
+    }
+
+    /**
+     * Sucht Einträge, läuft im Such-Thread
+     */
+    private List<PasswordEntry> findPasswords(String searchTerm) {
+        List<PasswordEntry> passwords = vaultManager.searchPasswords(searchTerm);
+
+        // Ohne Treffer ähnliche Einträge anzeigen, z.B. bei Tippfehlern
+        if (passwords.isEmpty() && !searchTerm.trim().isEmpty()) {
+            passwords = vaultManager.searchPasswordsFuzzy(searchTerm, FUZZY_RESULT_LIMIT);
+        }
+        return passwords;
     }
 
     private String formatDate(Date date) {
@@ -422,32 +561,61 @@ public class PasswordManager extends JFrame {
     }
 
     private void createNewVault() {
-        logout();
-        showLoginDialog();
+        if (logout()) {
+            showLoginDialog();
+        }
     }
 
     private void openVault() {
-        logout();
-        showLoginDialog();
+        if (logout()) {
+            showLoginDialog();
+        }
     }
 
     private void saveVault() {
-        if (vaultManager.saveVault()) {
-            updateStatusBar();
-            showInfo("Tresor erfolgreich gespeichert!");
-        } else {
-            showError("Fehler beim Speichern des Tresors!");
+        // Speichern läuft im Hintergrund, das Ergebnis wird im Event-Dispatch-Thread gemeldet
+        CompletableFuture<Boolean> save = vaultManager.saveVaultAsync();
+        boolean failureReported = save == watchedSave;
+        watchedSave = save;
+        save.whenComplete((saved, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null && saved) {
+                updateStatusBar();
+                showInfo("Tresor erfolgreich gespeichert!");
+            } else if (!failureReported) {
+                showError("Fehler beim Speichern des Tresors!");
+            }
+        }));
+    }
+
+    /**
+     * Meldet einen Fehler beim gesammelten Speichern nach einer Änderung
+     */
+    private void watchPendingSave() {
+        CompletableFuture<Boolean> pending = vaultManager.getPendingSave();
+        if (pending == null || pending == watchedSave) {
+            return;
         }
+
+        watchedSave = pending;
+        pending.whenComplete((saved, error) -> {
+            if (error != null || !saved) {
+                SwingUtilities.invokeLater(() -> showError("Fehler beim Speichern des Tresors im Hintergrund!"));
+            }
+        });
     }
 
-    private void logout() {
-        vaultManager.closeVault();
+    private boolean logout() {
+        if (!vaultManager.closeVault()) {
+            showError("Tresor konnte nicht gespeichert werden und bleibt geöffnet!");
+            return false;
+        }
         isLoggedIn = false;
         setComponentsEnabled(false);
         updatePasswordTable();
         updateStatusBar();
         setTitle("Sicherer Passwort-Manager");
         showLoginDialog();
+        return true;
     }
 
     private void exitApplication() {
@@ -463,11 +631,25 @@ public class PasswordManager extends JFrame {
                 return;
             }
 
-            if (option == JOptionPane.YES_OPTION) {
-                vaultManager.saveVault();
+            if (option == JOptionPane.YES_OPTION && !vaultManager.saveVault()) {
+                showError("Fehler beim Speichern des Tresors!");
+                return;
             }
         }
 
+        // Noch nicht gespeicherte Änderungen schreiben, der Hintergrund-Thread endet mit dem Programm
+        if (!vaultManager.closeVault()) {
+            int option = JOptionPane.showConfirmDialog(
+                    this,
+                    "Der Tresor konnte nicht gespeichert werden. Trotzdem beenden?",
+                    "Beenden bestätigen",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE
+            );
+            if (option != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
         System.exit(0);
     }
 
@@ -589,11 +771,17 @@ public class PasswordManager extends JFrame {
             return panel;
         }
 
-        private void viewPassword() {
-            List<PasswordEntry> passwords = vaultManager.getAllPasswords();
-            if (currentRow >= 0 && currentRow < passwords.size()) {
-                PasswordEntry entry = passwords.get(currentRow);
+        /**
+         * Aktueller Stand des Eintrags in der bearbeiteten Zeile, null wenn er inzwischen gelöscht wurde
+         */
+        private PasswordEntry currentEntry() {
+            PasswordEntry shown = tableModel.getEntryAt(currentRow);
+            return shown != null ? vaultManager.getPassword(shown.getId()) : null;
+        }
 
+        private void viewPassword() {
+            PasswordEntry entry = currentEntry();
+            if (entry != null) {
                 String message = String.format("""
                     Titel: %s
                     Benutzername: %s
@@ -614,9 +802,8 @@ public class PasswordManager extends JFrame {
         }
 
         private void copyPassword() {
-            List<PasswordEntry> passwords = vaultManager.getAllPasswords();
-            if (currentRow >= 0 && currentRow < passwords.size()) {
-                PasswordEntry entry = passwords.get(currentRow);
+            PasswordEntry entry = currentEntry();
+            if (entry != null) {
                 StringSelection selection = new StringSelection(entry.getPassword());
                 Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
                 showInfo("Passwort in Zwischenablage kopiert!");
@@ -625,17 +812,16 @@ public class PasswordManager extends JFrame {
         }
 
         private void editPassword() {
-            List<PasswordEntry> passwords = vaultManager.getAllPasswords();
-            if (currentRow >= 0 && currentRow < passwords.size()) {
-                PasswordEntry entry = passwords.get(currentRow);
-
+            PasswordEntry entry = currentEntry();
+            if (entry != null) {
                 AddPasswordDialog dialog = new AddPasswordDialog(PasswordManager.this, entry);
                 PasswordEntry updatedEntry = dialog.showDialog();
 
                 if (updatedEntry != null) {
-                    if (vaultManager.updatePassword(currentRow, updatedEntry)) {
+                    if (vaultManager.updatePasswordById(entry.getId(), updatedEntry)) {
                         updatePasswordTable();
                         updateStatusBar();
+                        watchPendingSave();
                         showInfo("Passwort erfolgreich aktualisiert!");
                     } else {
                         showError("Fehler beim Aktualisieren des Passworts!");
@@ -646,10 +832,8 @@ public class PasswordManager extends JFrame {
         }
 
         private void deletePassword() {
-            List<PasswordEntry> passwords = vaultManager.getAllPasswords();
-            if (currentRow >= 0 && currentRow < passwords.size()) {
-                PasswordEntry entry = passwords.get(currentRow);
-
+            PasswordEntry entry = currentEntry();
+            if (entry != null) {
                 int option = JOptionPane.showConfirmDialog(
                         PasswordManager.this,
                         "Sind Sie sicher, dass Sie das Passwort '" + entry.getTitle() + "' löschen möchten?",
@@ -659,9 +843,10 @@ public class PasswordManager extends JFrame {
                 );
 
                 if (option == JOptionPane.YES_OPTION) {
-                    if (vaultManager.removePassword(currentRow)) {
+                    if (vaultManager.removePasswordById(entry.getId())) {
                         updatePasswordTable();
                         updateStatusBar();
+                        watchPendingSave();
                         showInfo("Passwort erfolgreich gelöscht!");
                     } else {
                         showError("Fehler beim Löschen des Passworts!");
@@ -0,0 +1,834 @@
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Schätzt, wie viele Versuche ein Angreifer für ein Passwort braucht
+ *
+ * Angelehnt an zxcvbn: gesucht werden Wörterbuchwörter (auch mit Großbuchstaben und
+ * l33t-Ersetzungen), Tastaturfolgen auf QWERTZ und QWERTY, Wiederholungen, Folgen wie
+ * "abc" oder "4321" sowie Jahreszahlen und Datumsangaben. Eine dynamische
+ * Programmierung wählt die Zerlegung in Muster und zufällige Zeichen, die mit den
+ * wenigsten Versuchen zu erraten ist. Wörterbücher und Tastaturen werden erst beim
+ * ersten Gebrauch aufgebaut, die Wörter liegen dann in einem Präfixbaum aus
+ * parallelen Arrays.
+ */
+public final class PasswordPatterns {
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MIN_PATTERN_LENGTH = 3;
+
+    // Höchstens so viele l33t-Ersetzungen pro Wort, sonst verzweigt z.B. "1111" an jeder Stelle in i und l
+    private static final int MAX_SUBSTITUTIONS = 4;
+
+    // Nur so viele Zeichen werden nach Mustern durchsucht, der Rest zählt als zufällige Zeichen.
+    // Die Suche wächst etwa quadratisch mit der Länge und läuft bei jeder Eingabe im Dialog.
+    static final int MAX_ANALYZED_LENGTH = 256;
+
+    // Untergrenze für Muster aus mehreren Zeichen, auch das häufigste Passwort kostet einige Versuche
+    private static final double MIN_MATCH_GUESSES = 50;
+
+    // Jahreszahlen nahe am aktuellen Jahr sind am wahrscheinlichsten
+    private static final int REFERENCE_YEAR = Year.now().getValue();
+    private static final int MIN_YEAR_SPACE = 20;
+
+    public enum Type {
+        DICTIONARY("Wörterbuch"),
+        KEYBOARD("Tastaturfolge"),
+        REPEAT("Wiederholung"),
+        SEQUENCE("Zeichenfolge"),
+        DATE("Datum");
+
+        private final String displayName;
+
+        Type(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Gefundenes Muster im Bereich [start, end) des Passworts
+     */
+    public static final class Match {
+        private final Type type;
+        private final int start;
+        private final int end;
+        private final String token;
+        private final double guessesLog2;
+
+        Match(Type type, int start, int end, String token, double guesses) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.token = token;
+            this.guessesLog2 = log2(Math.max(guesses, MIN_MATCH_GUESSES));
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public double getGuessesLog2() {
+            return guessesLog2;
+        }
+
+        @Override
+        public String toString() {
+            return type.getDisplayName() + ": " + token;
+        }
+    }
+
+    /**
+     * Ergebnis einer Schätzung: Entropie in Bit und die Muster der günstigsten Zerlegung
+     */
+    public static final class Estimate {
+        private final double entropyBits;
+        private final List<Match> matches;
+
+        Estimate(double entropyBits, List<Match> matches) {
+            this.entropyBits = entropyBits;
+            this.matches = matches;
+        }
+
+        public double getEntropyBits() {
+            return entropyBits;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+    }
+
+    private PasswordPatterns() {
+    }
+
+    /**
+     * Schätzt die Entropie eines Passworts unter Berücksichtigung bekannter Muster
+     * Zeichen hinter {@link #MAX_ANALYZED_LENGTH} werden wie zufällige Zeichen bewertet.
+     */
+    public static Estimate estimate(CharSequence password) {
+        if (password == null || password.length() == 0) {
+            return new Estimate(0, Collections.emptyList());
+        }
+
+        // Zufällige Zeichen kosten so viel wie der Zeichenvorrat des ganzen Passworts
+        double charBits = PasswordStrength.entropyBits(PasswordStrength.characterClasses(password), 1);
+        int remainder = Math.max(0, password.length() - MAX_ANALYZED_LENGTH);
+
+        String text = password.subSequence(0, password.length() - remainder).toString();
+        // Zeichenweise, damit die Positionen mit dem Passwort übereinstimmen
+        char[] lowerChars = text.toCharArray();
+        for (int i = 0; i < lowerChars.length; i++) {
+            lowerChars[i] = Character.toLowerCase(lowerChars[i]);
+        }
+        String lower = new String(lowerChars);
+        int length = text.length();
+
+        List<Match> matches = new ArrayList<>();
+        matchDictionary(text, lower, matches);
+        matchKeyboard(text, lower, matches);
+        matchSequences(text, matches);
+        matchDates(text, matches);
+
+        // Wiederholungen zuletzt, ihr Block wird aus den schon gefundenen Mustern bewertet
+        MatchesByEnd found = new MatchesByEnd(matches, length);
+        List<Match> repeats = new ArrayList<>();
+        matchRepeats(text, 0, length, found, repeats);
+
+        // via[j]: letztes Muster der günstigsten Zerlegung der ersten j Zeichen
+        Match[] via = new Match[length + 1];
+        double bits = found.cheapest(0, length, charBits, repeats, via);
+
+        List<Match> sequence = new ArrayList<>();
+        for (int end = length; end > 0; ) {
+            if (via[end] != null) {
+                sequence.add(via[end]);
+                end = via[end].start;
+            } else {
+                end--;
+            }
+        }
+        Collections.reverse(sequence);
+        return new Estimate(bits + remainder * charBits, sequence);
+    }
+
+    // Wörterbuch
+
+    private static void matchDictionary(String text, String lower, List<Match> matches) {
+        Dictionary dictionary = Dictionary.INSTANCE;
+        for (int start = 0; start < lower.length(); start++) {
+            walkDictionary(dictionary, text, lower, start, start, 0, 0, matches);
+        }
+    }
+
+    /**
+     * Läuft ab start durch den Präfixbaum, l33t-Zeichen verzweigen in die ersetzten Buchstaben
+     * Nach {@link #MAX_SUBSTITUTIONS} Ersetzungen wird nur noch wörtlich weitergesucht.
+     */
+    private static void walkDictionary(Dictionary dictionary, String text, String lower, int start,
+                                       int position, int node, int substitutions, List<Match> matches) {
+        int rank = dictionary.ranks[node];
+        if (rank > 0 && position - start >= MIN_WORD_LENGTH) {
+            String token = text.substring(start, position);
+            double guesses = rank * uppercaseVariations(token) * Math.pow(2, substitutions);
+            matches.add(new Match(Type.DICTIONARY, start, position, token, guesses));
+        }
+        if (position == lower.length()) {
+            return;
+        }
+
+        char c = lower.charAt(position);
+        int child = dictionary.findChild(node, c);
+        if (child >= 0) {
+            walkDictionary(dictionary, text, lower, start, position + 1, child, substitutions, matches);
+        }
+
+        if (substitutions == MAX_SUBSTITUTIONS) {
+            return;
+        }
+        String replacements = l33tReplacements(c);
+        for (int i = 0; i < replacements.length(); i++) {
+            child = dictionary.findChild(node, replacements.charAt(i));
+            if (child >= 0) {
+                walkDictionary(dictionary, text, lower, start, position + 1, child, substitutions + 1, matches);
+            }
+        }
+    }
+
+    private static String l33tReplacements(char c) {
+        switch (c) {
+            case '4':
+            case '@':
+                return "a";
+            case '8':
+                return "b";
+            case '(':
+                return "c";
+            case '3':
+                return "e";
+            case '6':
+            case '9':
+                return "g";
+            case '1':
+            case '|':
+                return "il";
+            case '!':
+                return "i";
+            case '0':
+                return "o";
+            case '$':
+            case '5':
+                return "s";
+            case '7':
+            case '+':
+                return "t";
+            case '2':
+                return "z";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Anzahl der Schreibweisen aus Groß- und Kleinbuchstaben, die ein Angreifer probieren muss
+     */
+    private static double uppercaseVariations(String token) {
+        int upper = 0;
+        int lower = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (Character.isUpperCase(c)) {
+                upper++;
+            } else if (Character.isLowerCase(c)) {
+                lower++;
+            }
+        }
+
+        // Nur der erste oder letzte Buchstabe groß ist fast so häufig wie alles klein
+        boolean firstOnly = upper == 1 && Character.isUpperCase(token.charAt(0));
+        boolean lastOnly = upper == 1 && Character.isUpperCase(token.charAt(token.length() - 1));
+        if (upper > 0 && lower > 0 && (firstOnly || lastOnly)) {
+            return 2;
+        }
+        return variations(upper, lower);
+    }
+
+    /**
+     * Mögliche Verteilungen von a besonderen auf a + b Zeichen, höchstens min(a, b) davon
+     */
+    private static double variations(int a, int b) {
+        if (a == 0) {
+            return 1;
+        }
+        if (b == 0) {
+            return 2;
+        }
+        double variations = 0;
+        for (int k = 1; k <= Math.min(a, b); k++) {
+            variations += binomial(a + b, k);
+        }
+        return variations;
+    }
+
+    // Tastatur
+
+    private static void matchKeyboard(String text, String lower, List<Match> matches) {
+        for (Keyboard keyboard : Keyboard.LAYOUTS) {
+            int start = 0;
+            while (start < lower.length() - 1) {
+                int end = start + 1;
+                int turns = 0;
+                int lastDirection = -1;
+                int shifted = keyboard.isShifted(lower.charAt(start)) ? 1 : 0;
+                while (end < lower.length()) {
+                    int direction = keyboard.direction(lower.charAt(end - 1), lower.charAt(end));
+                    if (direction < 0) {
+                        break;
+                    }
+                    if (direction != lastDirection) {
+                        turns++;
+                        lastDirection = direction;
+                    }
+                    if (keyboard.isShifted(lower.charAt(end))) {
+                        shifted++;
+                    }
+                    end++;
+                }
+
+                if (end - start >= MIN_PATTERN_LENGTH) {
+                    String token = text.substring(start, end);
+                    double guesses = keyboard.walkGuesses(end - start, turns)
+                            * variations(shifted, end - start - shifted) * uppercaseVariations(token);
+                    matches.add(new Match(Type.KEYBOARD, start, end, token, guesses));
+                    start = end - 1;
+                } else {
+                    start++;
+                }
+            }
+        }
+    }
+
+    // Wiederholungen und Folgen
+
+    /**
+     * Findet sich wiederholende Blöcke wie "aaaa" oder "abcabc" in [from, to), jeweils mit dem
+     * kürzesten Block, in der Reihenfolge ihres Vorkommens
+     * Der Block wird nicht erneut vollständig geschätzt, sondern aus den schon gefundenen
+     * Mustern in seinem ersten Vorkommen und den Wiederholungen darin bewertet.
+     */
+    private static void matchRepeats(String text, int from, int to, MatchesByEnd found, List<Match> matches) {
+        int start = from;
+        while (start < to - 1) {
+            int matchedEnd = -1;
+            int blockLength = 0;
+            for (int block = 1; block <= (to - start) / 2; block++) {
+                int end = start + block;
+                while (end < to && text.charAt(end) == text.charAt(end - block)) {
+                    end++;
+                }
+                int repeats = (end - start) / block;
+                if (repeats >= 2 && repeats * block >= MIN_PATTERN_LENGTH) {
+                    matchedEnd = start + repeats * block;
+                    blockLength = block;
+                    break;
+                }
+            }
+
+            if (matchedEnd < 0) {
+                start++;
+                continue;
+            }
+
+            String base = text.substring(start, start + blockLength);
+            double baseCharBits = PasswordStrength.entropyBits(PasswordStrength.characterClasses(base), 1);
+            double baseBits = baseCharBits;
+            if (blockLength > 1) {
+                List<Match> inner = new ArrayList<>();
+                matchRepeats(text, start, start + blockLength, found, inner);
+                baseBits = found.cheapest(start, start + blockLength, baseCharBits, inner, null);
+            }
+            int repeats = (matchedEnd - start) / blockLength;
+            double guesses = Math.pow(2, baseBits) * repeats;
+            matches.add(new Match(Type.REPEAT, start, matchedEnd, text.substring(start, matchedEnd), guesses));
+            start = matchedEnd;
+        }
+    }
+
+    /**
+     * Findet Folgen mit gleichem Abstand wie "abc", "4321" oder "acegi"
+     */
+    private static void matchSequences(String text, List<Match> matches) {
+        int start = 0;
+        while (start < text.length() - 2) {
+            int delta = text.charAt(start + 1) - text.charAt(start);
+            int end = start + 1;
+            if (delta != 0 && Math.abs(delta) <= 5) {
+                while (end < text.length()
+                        && text.charAt(end) - text.charAt(end - 1) == delta
+                        && sameSequenceClass(text.charAt(start), text.charAt(end))) {
+                    end++;
+                }
+            }
+
+            if (end - start >= MIN_PATTERN_LENGTH) {
+                String token = text.substring(start, end);
+                char first = token.charAt(0);
+                double base;
+                if ("aAzZ019".indexOf(first) >= 0) {
+                    base = 4;
+                } else if (Character.isDigit(first)) {
+                    base = 10;
+                } else {
+                    base = 26;
+                }
+                double guesses = base * token.length() * Math.abs(delta) * (delta < 0 ? 2 : 1);
+                matches.add(new Match(Type.SEQUENCE, start, end, token, guesses));
+                start = end - 1;
+            } else {
+                start++;
+            }
+        }
+    }
+
+    private static boolean sameSequenceClass(char a, char b) {
+        return (Character.isDigit(a) && Character.isDigit(b))
+                || (Character.isLowerCase(a) && Character.isLowerCase(b))
+                || (Character.isUpperCase(a) && Character.isUpperCase(b));
+    }
+
+    // Datum
+
+    /**
+     * Findet Jahreszahlen und Datumsangaben mit oder ohne Trennzeichen, z.B. 1987, 24.12.99
+     */
+    private static void matchDates(String text, List<Match> matches) {
+        for (int start = 0; start < text.length(); start++) {
+            if (!isDigit(text.charAt(start))) {
+                continue;
+            }
+            for (int end = start + 2; end <= Math.min(text.length(), start + 10); end++) {
+                char last = text.charAt(end - 1);
+                if (!isDigit(last)) {
+                    if (" -/._\\".indexOf(last) < 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (end - start < 4) {
+                    continue;
+                }
+                int year = parseDate(text, start, end);
+                if (year < 0) {
+                    continue;
+                }
+
+                double guesses = Math.max(Math.abs(year - REFERENCE_YEAR), MIN_YEAR_SPACE);
+                if (end - start > 4) {
+                    guesses *= 365;
+                    if (!allDigits(text, start, end)) {
+                        guesses *= 4; // Trennzeichen
+                    }
+                }
+                matches.add(new Match(Type.DATE, start, end, text.substring(start, end), guesses));
+            }
+        }
+    }
+
+    /**
+     * Liefert das Jahr einer Jahreszahl oder eines Datums in [start, end), -1 wenn es keines ist
+     * Arbeitet auf dem Passwort selbst, da jede Teilfolge aus Ziffern geprüft wird.
+     */
+    private static int parseDate(String text, int start, int end) {
+        int length = end - start;
+        if (allDigits(text, start, end)) {
+            if (length == 4) {
+                int year = number(text, start, end);
+                return year >= 1900 && year <= 2099 ? year : -1;
+            }
+            if (length > 8) {
+                return -1;
+            }
+
+            // Alle Aufteilungen in drei Teile probieren
+            for (int first = 1; first <= 4; first++) {
+                for (int second = 1; second <= 2; second++) {
+                    int third = length - first - second;
+                    if (third < 1 || third > 4) {
+                        continue;
+                    }
+                    int secondStart = start + first;
+                    int thirdStart = secondStart + second;
+                    int year = dateYear(number(text, start, secondStart), first,
+                            number(text, secondStart, thirdStart), second, number(text, thirdStart, end), third);
+                    if (year >= 0) {
+                        return year;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // Mit Trennzeichen: zwei gleiche Trennzeichen zwischen drei Zahlen
+        int firstSeparator = -1;
+        int secondSeparator = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                continue;
+            }
+            if (" -/._\\".indexOf(c) < 0 || secondSeparator >= 0) {
+                return -1;
+            }
+            if (firstSeparator < 0) {
+                firstSeparator = i;
+            } else {
+                secondSeparator = i;
+            }
+        }
+        if (secondSeparator < 0 || text.charAt(firstSeparator) != text.charAt(secondSeparator)
+                || secondSeparator == firstSeparator + 1 || firstSeparator == start) {
+            return -1;
+        }
+        int firstLength = firstSeparator - start;
+        int secondLength = secondSeparator - firstSeparator - 1;
+        int thirdLength = end - secondSeparator - 1;
+        if (firstLength > 4 || secondLength > 2 || thirdLength < 1 || thirdLength > 4) {
+            return -1;
+        }
+        return dateYear(number(text, start, firstSeparator), firstLength,
+                number(text, firstSeparator + 1, secondSeparator), secondLength,
+                number(text, secondSeparator + 1, end), thirdLength);
+    }
+
+    /**
+     * Prüft Tag-Monat-Jahr, Monat-Tag-Jahr und Jahr-Monat-Tag, liefert das Jahr oder -1
+     * Die Längen der Teile sind 1 bis 4, 1 bis 2 und 1 bis 4 Ziffern.
+     */
+    private static int dateYear(int first, int firstLength, int second, int secondLength,
+                                int third, int thirdLength) {
+        if (firstLength <= 2 && isYear(third, thirdLength)
+                && (isDayMonth(first, second) || isDayMonth(second, first))) {
+            return toYear(third, thirdLength);
+        }
+        if (thirdLength <= 2 && isYear(first, firstLength) && isDayMonth(third, second)) {
+            return toYear(first, firstLength);
+        }
+        return -1;
+    }
+
+    private static boolean isYear(int value, int length) {
+        return length == 2 || (length == 4 && value >= 1900 && value <= 2099);
+    }
+
+    private static int toYear(int value, int length) {
+        if (length == 4) {
+            return value;
+        }
+        return value > REFERENCE_YEAR % 100 ? 1900 + value : 2000 + value;
+    }
+
+    private static int number(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + text.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    private static boolean isDayMonth(int day, int month) {
+        return day >= 1 && day <= 31 && month >= 1 && month <= 12;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean allDigits(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double binomial(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    /**
+     * Muster nach ihrem Ende geordnet, für die günstigste Zerlegung eines Bereichs
+     * Die Reihenfolge innerhalb eines Endes bleibt die der Suche.
+     */
+    private static final class MatchesByEnd {
+        private final Match[] matches;
+        // Die Muster mit Ende e liegen in matches[firstByEnd[e]] bis matches[firstByEnd[e + 1] - 1]
+        private final int[] firstByEnd;
+
+        MatchesByEnd(List<Match> unordered, int length) {
+            firstByEnd = new int[length + 2];
+            for (Match match : unordered) {
+                firstByEnd[match.end + 1]++;
+            }
+            for (int end = 1; end < firstByEnd.length; end++) {
+                firstByEnd[end] += firstByEnd[end - 1];
+            }
+            matches = new Match[unordered.size()];
+            int[] next = Arrays.copyOf(firstByEnd, length + 1);
+            for (Match match : unordered) {
+                matches[next[match.end]++] = match;
+            }
+        }
+
+        /**
+         * Bit der günstigsten Zerlegung von [from, to) aus Mustern in diesem Bereich und zufälligen Zeichen
+         * extra sind weitere Muster im Bereich, nach ihrem Ende geordnet. via erhält, falls
+         * angegeben, für jedes Ende das letzte Muster der günstigsten Zerlegung bis dorthin.
+         */
+        double cheapest(int from, int to, double charBits, List<Match> extra, Match[] via) {
+            // bits[j]: günstigste Zerlegung der ersten j Zeichen ab from
+            double[] bits = new double[to - from + 1];
+            int nextExtra = 0;
+            for (int end = from + 1; end <= to; end++) {
+                double best = bits[end - from - 1] + charBits;
+                Match chosen = null;
+                for (int i = firstByEnd[end]; i < firstByEnd[end + 1]; i++) {
+                    Match match = matches[i];
+                    if (match.start >= from && bits[match.start - from] + match.guessesLog2 < best) {
+                        best = bits[match.start - from] + match.guessesLog2;
+                        chosen = match;
+                    }
+                }
+                for (; nextExtra < extra.size() && extra.get(nextExtra).end == end; nextExtra++) {
+                    Match match = extra.get(nextExtra);
+                    if (bits[match.start - from] + match.guessesLog2 < best) {
+                        best = bits[match.start - from] + match.guessesLog2;
+                        chosen = match;
+                    }
+                }
+                bits[end - from] = best;
+                if (via != null) {
+                    via[end] = chosen;
+                }
+            }
+            return bits[to - from];
+        }
+    }
+
+    /**
+     * Präfixbaum aller Wörterbücher in parallelen Arrays, Rang 0 heißt kein Wortende
+     * Kommt ein Wort in mehreren Listen vor, zählt der beste Rang. Die Klasse wird erst
+     * bei der ersten Schätzung geladen und aufgebaut.
+     */
+    private static final class Dictionary {
+        static final Dictionary INSTANCE = new Dictionary(
+                PasswordWordlists.PASSWORDS, PasswordWordlists.ENGLISH,
+                PasswordWordlists.GERMAN, PasswordWordlists.NAMES);
+
+        private char[] labels = new char[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private int[] ranks = new int[1024];
+        private int nodeCount;
+
+        private Dictionary(String... wordlists) {
+            newNode('\0');
+            for (String wordlist : wordlists) {
+                int rank = 0;
+                for (String word : wordlist.split(" ")) {
+                    rank++;
+                    if (word.length() >= MIN_WORD_LENGTH) {
+                        add(word, rank);
+                    }
+                }
+            }
+
+            // Überzählige Kapazität freigeben, der Baum ändert sich nicht mehr
+            labels = Arrays.copyOf(labels, nodeCount);
+            firstChild = Arrays.copyOf(firstChild, nodeCount);
+            nextSibling = Arrays.copyOf(nextSibling, nodeCount);
+            ranks = Arrays.copyOf(ranks, nodeCount);
+        }
+
+        private void add(String word, int rank) {
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int child = findChild(node, c);
+                if (child < 0) {
+                    child = newNode(c);
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            if (ranks[node] == 0 || rank < ranks[node]) {
+                ranks[node] = rank;
+            }
+        }
+
+        int findChild(int node, char label) {
+            int child = firstChild[node];
+            while (child >= 0 && labels[child] != label) {
+                child = nextSibling[child];
+            }
+            return child;
+        }
+
+        private int newNode(char label) {
+            if (nodeCount == labels.length) {
+                int capacity = nodeCount * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+            }
+            labels[nodeCount] = label;
+            firstChild[nodeCount] = -1;
+            nextSibling[nodeCount] = -1;
+            ranks[nodeCount] = 0;
+            return nodeCount++;
+        }
+    }
+
+    /**
+     * Tastenpositionen eines Tastaturlayouts für die Erkennung von Tastaturfolgen
+     * Reihen sind gegeneinander um eine halbe Taste nach rechts versetzt: unter der Taste
+     * (r, c) liegen (r + 1, c - 1) und (r + 1, c).
+     */
+    private static final class Keyboard {
+        static final Keyboard[] LAYOUTS = {
+                new Keyboard(
+                        new String[]{"1234567890ß´", "qwertzuiopü+", "asdfghjklöä#", "yxcvbnm,.-"},
+                        new String[]{"!\"§$%&/()=?`", "QWERTZUIOPÜ*", "ASDFGHJKLÖÄ'", "YXCVBNM;:_"}),
+                new Keyboard(
+                        new String[]{"1234567890-=", "qwertyuiop[]", "asdfghjkl;'", "zxcvbnm,./"},
+                        new String[]{"!@#$%^&*()_+", "QWERTYUIOP{}", "ASDFGHJKL:\"", "ZXCVBNM<>?"})
+        };
+
+        // Zeile * 32 + Spalte je Zeichen, -1 wenn das Zeichen nicht vorkommt
+        private final int[] positions = new int[0x100];
+        private final boolean[] shifted = new boolean[0x100];
+        private final String[] rows;
+        private final int keyCount;
+        private final double averageDegree;
+
+        private Keyboard(String[] rows, String[] shiftedRows) {
+            this.rows = rows;
+            Arrays.fill(positions, -1);
+            int keys = 0;
+            for (int row = 0; row < rows.length; row++) {
+                for (int column = 0; column < rows[row].length(); column++) {
+                    positions[rows[row].charAt(column)] = row * 32 + column;
+                    char shiftedKey = shiftedRows[row].charAt(column);
+                    // Großbuchstaben werden vor dem Vergleich kleingeschrieben
+                    if (!Character.isLetter(shiftedKey)) {
+                        positions[shiftedKey] = row * 32 + column;
+                        shifted[shiftedKey] = true;
+                    }
+                    keys++;
+                }
+            }
+            this.keyCount = keys;
+
+            int neighbours = 0;
+            for (int row = 0; row < rows.length; row++) {
+                for (int column = 0; column < rows[row].length(); column++) {
+                    for (int direction = 0; direction < 6; direction++) {
+                        if (neighbour(row, column, direction) >= 0) {
+                            neighbours++;
+                        }
+                    }
+                }
+            }
+            this.averageDegree = neighbours / (double) keys;
+        }
+
+        boolean isShifted(char c) {
+            return c < shifted.length && shifted[c];
+        }
+
+        /**
+         * Richtung von a nach b (0-5), -1 wenn die Tasten nicht benachbart sind
+         */
+        int direction(char a, char b) {
+            if (a >= positions.length || b >= positions.length || positions[a] < 0 || positions[b] < 0) {
+                return -1;
+            }
+            int target = positions[b];
+            for (int direction = 0; direction < 6; direction++) {
+                if (neighbour(positions[a] / 32, positions[a] % 32, direction) == target) {
+                    return direction;
+                }
+            }
+            return -1;
+        }
+
+        private int neighbour(int row, int column, int direction) {
+            switch (direction) {
+                case 0:
+                    column--;
+                    break;
+                case 1:
+                    column++;
+                    break;
+                case 2:
+                    row--;
+                    break;
+                case 3:
+                    row--;
+                    column++;
+                    break;
+                case 4:
+                    row++;
+                    column--;
+                    break;
+                default:
+                    row++;
+                    break;
+            }
+            if (row < 0 || row >= rows.length || column < 0 || column >= rows[row].length()) {
+                return -1;
+            }
+            return row * 32 + column;
+        }
+
+        /**
+         * Versuche für alle Folgen bis zu dieser Länge mit höchstens so vielen Richtungswechseln
+         */
+        double walkGuesses(int length, int turns) {
+            double guesses = 0;
+            for (int i = 2; i <= length; i++) {
+                for (int j = 1; j <= Math.min(turns, i - 1); j++) {
+                    guesses += binomial(i - 1, j - 1) * keyCount * Math.pow(averageDegree, j);
+                }
+            }
+            return guesses;
+        }
+    }
+}
@@ -0,0 +1,706 @@
+import java.util.*;
+
+/**
+ * Suchindex über Titel, Benutzername und Website
+ *
+ * Enthält zwei invertierte Indizes auf sortierte Listen interner Eintragsnummern:
+ * die Wörter (zusammenhängende Buchstaben und Ziffern, kleingeschrieben) für die
+ * unscharfe Suche und alle Trigramme (drei aufeinanderfolgende, kleingeschriebene Zeichen) jedes Feldes.
+ * Die Nummern werden in Reihenfolge der Einträge vergeben, sodass Treffer in der
+ * Reihenfolge der Tresor-Liste geliefert werden. Der Index wird bei jeder Änderung
+ * inkrementell gepflegt, eine Suche berührt nur die passenden Listen statt alle Einträge.
+ * Für die unscharfe Suche sind alle Wörter zusätzlich in einem {@link WordBkTree} abgelegt,
+ * Titel und Domains für die Vervollständigung in einem {@link CompletionTrie}.
+ */
+public class PasswordSearchIndex {
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final TrigramTable trigrams = new TrigramTable();
+    private final WordBkTree wordTree = new WordBkTree();
+
+    private final CompletionTrie completions = new CompletionTrie();
+
+    // Wörter im BK-Baum, zu denen es keine Einträge mehr gibt
+    private int staleWords;
+
+    // Bewertung eines Anfragewortes je nach Art des Treffers
+    private static final float EXACT_SCORE = 1.0f;
+    private static final float PREFIX_SCORE = 0.5f;
+    private static final float FUZZY_SCORE = 0.8f;
+    private static final float DISTANCE_PENALTY = 0.2f;
+
+    private final Map<PasswordEntry, Integer> ids = new IdentityHashMap<>();
+    private final List<PasswordEntry> entriesById = new ArrayList<>();
+
+    // Kleingeschriebene, durch SEPARATOR verbundene Felder je Eintragsnummer zum Prüfen der Kandidaten.
+    // Aus ihnen und den Vorschlägen wird auch wieder ausgetragen: der Eintrag selbst kann seit dem
+    // Aufnehmen geändert worden sein.
+    private final List<String> searchTextById = new ArrayList<>();
+    private final List<String[]> completionTermsById = new ArrayList<>();
+
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * Sortierte Liste von Eintragsnummern zu einem Wort
+     */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return;
+                }
+                insertAt(-position - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        private void insertAt(int position, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Hash-Tabelle mit offener Adressierung von Trigrammen (drei Zeichen in einem long) auf Listen
+     * Leere Listen bleiben bis zum nächsten Neuaufbau stehen.
+     */
+    private static class TrigramTable {
+        long[] keys = new long[1024];
+        Postings[] values = new Postings[1024];
+        int size;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key, mask);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = new Postings();
+            size++;
+            return values[slot];
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = hash(oldKeys[i], mask);
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        }
+    }
+
+    /**
+     * Baut den Index für alle Einträge neu auf
+     */
+    public void rebuild(List<PasswordEntry> entries) {
+        clear();
+        for (PasswordEntry entry : entries) {
+            add(entry);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        trigrams.clear();
+        wordTree.clear();
+        completions.clear();
+        staleWords = 0;
+        ids.clear();
+        entriesById.clear();
+        searchTextById.clear();
+        completionTermsById.clear();
+    }
+
+    /**
+     * Nimmt einen neuen Eintrag am Ende der Reihenfolge auf
+     */
+    public void add(PasswordEntry entry) {
+        int id = entriesById.size();
+        entriesById.add(entry);
+        searchTextById.add(null);
+        completionTermsById.add(null);
+        ids.put(entry, id);
+        indexTokens(entry, id);
+    }
+
+    /**
+     * Entfernt einen Eintrag aus dem Index
+     */
+    public void remove(PasswordEntry entry) {
+        Integer id = ids.remove(entry);
+        if (id == null) {
+            return;
+        }
+
+        unindexTokens(id);
+        entriesById.set(id, null);
+        searchTextById.set(id, null);
+        completionTermsById.set(id, null);
+
+        // Nummern neu vergeben, wenn überwiegend gelöschte Einträge belegt sind
+        if (entriesById.size() > 64 && ids.size() < entriesById.size() / 2) {
+            List<PasswordEntry> remaining = new ArrayList<>(ids.size());
+            for (PasswordEntry remainingEntry : entriesById) {
+                if (remainingEntry != null) {
+                    remaining.add(remainingEntry);
+                }
+            }
+            rebuild(remaining);
+        }
+    }
+
+    /**
+     * Ersetzt einen Eintrag, der neue Eintrag übernimmt dessen Position in der Reihenfolge
+     * Auch derselbe, inzwischen geänderte Eintrag wird vollständig neu indiziert.
+     */
+    public void replace(PasswordEntry oldEntry, PasswordEntry newEntry) {
+        Integer id = ids.get(oldEntry);
+        if (id == null) {
+            add(newEntry);
+            return;
+        }
+
+        ids.remove(oldEntry);
+        unindexTokens(id);
+        entriesById.set(id, newEntry);
+        ids.put(newEntry, id);
+        indexTokens(newEntry, id);
+    }
+
+    /**
+     * Sucht Einträge, die jeden durch Leerzeichen getrennten Teil der Anfrage
+     * als Teilzeichenkette in Titel, Benutzername oder Website enthalten
+     * Teile ab drei Zeichen grenzen die Kandidaten über ihre Trigramme ein, nur die
+     * verbleibenden Kandidaten werden anschließend Zeichen für Zeichen geprüft.
+     *
+     * @return Treffer in Reihenfolge der Einträge
+     */
+    public List<PasswordEntry> search(String query) {
+        List<String> parts = new ArrayList<>(2);
+        for (String part : query.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                parts.add(toLowerCase(part));
+            }
+        }
+
+        // Trigramm-Listen aller Teile sammeln, die kürzeste zuerst schneiden
+        List<Postings> lists = new ArrayList<>();
+        for (String part : parts) {
+            for (int i = 0; i + 3 <= part.length(); i++) {
+                Postings list = trigrams.get(trigramKey(part.charAt(i), part.charAt(i + 1), part.charAt(i + 2)));
+                if (list == null || list.size == 0) {
+                    return new ArrayList<>();
+                }
+                lists.add(list);
+            }
+        }
+
+        int[] candidates;
+        int candidateCount;
+        if (lists.isEmpty()) {
+            // Nur kurze Teile: alle Einträge prüfen
+            candidates = new int[ids.size()];
+            candidateCount = 0;
+            for (int id = 0; id < entriesById.size(); id++) {
+                if (entriesById.get(id) != null) {
+                    candidates[candidateCount++] = id;
+                }
+            }
+        } else {
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            Postings smallest = lists.get(0);
+            candidates = Arrays.copyOf(smallest.ids, smallest.size);
+            candidateCount = smallest.size;
+            for (int i = 1; i < lists.size() && candidateCount > 0; i++) {
+                Postings list = lists.get(i);
+                candidateCount = intersect(candidates, candidateCount, list.ids, list.size);
+            }
+        }
+
+        List<PasswordEntry> results = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            if (containsAllParts(searchTextById.get(candidates[i]), parts)) {
+                results.add(entriesById.get(candidates[i]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Unscharfe, nach Relevanz sortierte Suche, die auch Tippfehler toleriert
+     * Jedes Wort der Anfrage muss in einem Eintrag exakt, als Wortanfang oder mit kleiner
+     * Levenshtein-Distanz (1 ab drei, 2 ab sechs Zeichen) vorkommen. Bewertet werden nur
+     * Einträge aus den Listen der gefundenen Wörter, nicht alle Einträge.
+     *
+     * @return die besten höchstens {@code limit} Einträge, der relevanteste zuerst
+     */
+    public List<PasswordEntry> searchFuzzy(String query, int limit) {
+        List<String> queryWords = new ArrayList<>(2);
+        tokenize(query, queryWords);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Bewertungen nur für Einträge aus den Listen, der Aufwand wächst mit ihnen, nicht mit dem Tresor
+        WordScores wordScores = new WordScores(entriesById.size());
+        int[] candidates = null;
+        float[] totals = null;
+        int candidateCount = 0;
+
+        for (String word : queryWords) {
+            if (word.length() >= 2) {
+                for (Map.Entry<String, Postings> match : postings.subMap(word, word + Character.MAX_VALUE).entrySet()) {
+                    // Je mehr vom Wort getippt ist, desto höher die Bewertung
+                    float score = match.getKey().length() == word.length() ? EXACT_SCORE
+                            : PREFIX_SCORE + PREFIX_SCORE * word.length() / match.getKey().length();
+                    wordScores.add(match.getValue(), score);
+                }
+            } else {
+                Postings exact = postings.get(word);
+                if (exact != null) {
+                    wordScores.add(exact, EXACT_SCORE);
+                }
+            }
+
+            int maxDistance = word.length() >= 6 ? 2 : word.length() >= 3 ? 1 : 0;
+            if (maxDistance > 0) {
+                for (WordBkTree.Match match : wordTree.search(word, maxDistance)) {
+                    Postings list = postings.get(match.word);
+                    if (list != null && match.distance > 0) {
+                        wordScores.add(list, FUZZY_SCORE - DISTANCE_PENALTY * match.distance);
+                    }
+                }
+            }
+
+            wordScores.build();
+            if (candidates == null) {
+                candidates = Arrays.copyOf(wordScores.touched, wordScores.touchedCount);
+                candidateCount = candidates.length;
+                totals = new float[candidateCount];
+                for (int i = 0; i < candidateCount; i++) {
+                    totals[i] = wordScores.get(candidates[i]);
+                }
+            } else {
+                // Nur Einträge behalten, die auch zu diesem Wort passen
+                int kept = 0;
+                for (int i = 0; i < candidateCount; i++) {
+                    float score = wordScores.get(candidates[i]);
+                    if (score > 0) {
+                        totals[kept] = totals[i] + score;
+                        candidates[kept++] = candidates[i];
+                    }
+                }
+                candidateCount = kept;
+            }
+            if (candidateCount == 0) {
+                return new ArrayList<>();
+            }
+            wordScores.reset();
+        }
+
+        // Die besten Kandidaten über einen begrenzten Heap bestimmen, bei Gleichstand zählt die Reihenfolge
+        int[] ids = candidates;
+        float[] scores = totals;
+        Comparator<Integer> ranking = (a, b) -> {
+            int byScore = Float.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(ids[b], ids[a]);
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, candidateCount) + 1, ranking);
+        for (int i = 0; i < candidateCount; i++) {
+            best.add(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(ranking.reversed());
+        List<PasswordEntry> results = new ArrayList<>(ranked.size());
+        for (Integer i : ranked) {
+            results.add(entriesById.get(ids[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Beste Bewertung je Eintrag für ein einzelnes Anfragewort
+     * Sammelt zuerst die Listen der Treffer und legt dann nur für deren Einträge eine
+     * Hash-Tabelle mit offener Adressierung an (Schlüssel id + 1, 0 heißt frei). Erst wenn
+     * die Listen zusammen einen großen Teil des Tresors abdecken, lohnt sich ein Feld über
+     * alle Nummern; auch dann bleibt der Aufwand proportional zur Länge der Listen.
+     */
+    private static class WordScores {
+        // Ab diesem Anteil der Listen an allen Nummern wird ein Feld statt der Hash-Tabelle angelegt
+        private static final int DENSE_FRACTION = 8;
+
+        private final int idLimit;
+        private final List<Postings> lists = new ArrayList<>();
+        private float[] listScores = new float[8];
+        private int postingCount;
+
+        private int[] keys;
+        private float[] scores;
+        private boolean dense;
+        int[] touched;
+        int touchedCount;
+
+        WordScores(int idLimit) {
+            this.idLimit = idLimit;
+        }
+
+        void add(Postings list, float score) {
+            if (lists.size() == listScores.length) {
+                listScores = Arrays.copyOf(listScores, listScores.length * 2);
+            }
+            listScores[lists.size()] = score;
+            lists.add(list);
+            postingCount += list.size;
+        }
+
+        /**
+         * Füllt die Bewertungen aus allen gesammelten Listen, danach liefert {@link #get} die beste je Eintrag
+         */
+        void build() {
+            dense = (long) postingCount * DENSE_FRACTION >= idLimit;
+            if (dense) {
+                keys = null;
+                scores = new float[idLimit];
+            } else {
+                int capacity = Integer.highestOneBit(Math.max(8, postingCount) * 2 - 1) * 2;
+                keys = new int[capacity];
+                scores = new float[capacity];
+            }
+            // Kein Eintrag wird doppelt vermerkt, mehr als alle Nummern gibt es nicht
+            touched = new int[Math.min(postingCount, idLimit)];
+            touchedCount = 0;
+
+            for (int l = 0; l < lists.size(); l++) {
+                Postings list = lists.get(l);
+                float score = listScores[l];
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    int slot = dense ? id : insert(id);
+                    if (dense && scores[slot] == 0) {
+                        touched[touchedCount++] = id;
+                    }
+                    if (score > scores[slot]) {
+                        scores[slot] = score;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Platz des Eintrags in der Hash-Tabelle, ein neuer Eintrag wird dabei als berührt vermerkt
+         */
+        private int insert(int id) {
+            int mask = keys.length - 1;
+            int slot = hash(id, mask);
+            while (keys[slot] != 0 && keys[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = id + 1;
+                touched[touchedCount++] = id;
+            }
+            return slot;
+        }
+
+        float get(int id) {
+            if (dense) {
+                return scores[id];
+            }
+            int mask = keys.length - 1;
+            for (int slot = hash(id, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == id + 1) {
+                    return scores[slot];
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            lists.clear();
+            postingCount = 0;
+        }
+
+        private static int hash(int id, int mask) {
+            int h = id * 0x9E3779B9;
+            return (h ^ h >>> 16) & mask;
+        }
+    }
+
+    /**
+     * Vervollständigt den Anfang eines Titels oder einer Domain
+     *
+     * @return höchstens {@code limit} Titel und Domains, häufigste zuerst
+     */
+    public List<String> complete(String prefix, int limit) {
+        return completions.complete(prefix, limit);
+    }
+
+    /**
+     * Schneidet die ersten {@code size} Werte von {@code target} mit {@code other},
+     * das Ergebnis steht am Anfang von {@code target}
+     */
+    private static int intersect(int[] target, int size, int[] other, int otherSize) {
+        if (otherSize > size * 16) {
+            // Sehr ungleiche Listen: die kurze Liste per Binärsuche in der langen nachschlagen
+            int out = 0, from = 0;
+            for (int i = 0; i < size && from < otherSize; i++) {
+                int position = Arrays.binarySearch(other, from, otherSize, target[i]);
+                if (position >= 0) {
+                    target[out++] = target[i];
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+            return out;
+        }
+
+        int i = 0, j = 0, out = 0;
+        while (i < size && j < otherSize) {
+            if (target[i] < other[j]) {
+                i++;
+            } else if (target[i] > other[j]) {
+                j++;
+            } else {
+                target[out++] = target[i];
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private void indexTokens(PasswordEntry entry, int id) {
+        String text = searchText(entry);
+        searchTextById.set(id, text);
+        for (String token : tokensOf(text)) {
+            postings.computeIfAbsent(token, t -> {
+                wordTree.add(t);
+                return new Postings();
+            }).add(id);
+        }
+
+        String[] terms = {entry.getTitle(), domainOf(entry.getWebsite())};
+        completionTermsById.set(id, terms);
+        for (String term : terms) {
+            completions.add(term);
+        }
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            if (isTrigram(text, i)) {
+                trigrams.getOrCreate(trigramKey(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2))).add(id);
+            }
+        }
+    }
+
+    private void unindexTrigrams(int id) {
+        String text = searchTextById.get(id);
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            if (isTrigram(text, i)) {
+                Postings list = trigrams.get(trigramKey(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+                if (list != null) {
+                    list.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Trigramme über Feldgrenzen hinweg werden nicht indiziert
+     */
+    private static boolean isTrigram(String text, int offset) {
+        return text.charAt(offset) != SEPARATOR && text.charAt(offset + 1) != SEPARATOR
+                && text.charAt(offset + 2) != SEPARATOR;
+    }
+
+    /**
+     * Domain einer Website ohne Schema, "www.", Port und Pfad, z.B. "github.com"
+     */
+    static String domainOf(String website) {
+        if (website == null) {
+            return null;
+        }
+
+        String domain = website.trim();
+        int scheme = domain.indexOf("://");
+        if (scheme >= 0) {
+            domain = domain.substring(scheme + 3);
+        }
+        for (int i = 0; i < domain.length(); i++) {
+            char c = domain.charAt(i);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                domain = domain.substring(0, i);
+                break;
+            }
+        }
+        int userInfo = domain.lastIndexOf('@');
+        if (userInfo >= 0) {
+            domain = domain.substring(userInfo + 1);
+        }
+        if (domain.regionMatches(true, 0, "www.", 0, 4)) {
+            domain = domain.substring(4);
+        }
+        return domain;
+    }
+
+    private static String searchText(PasswordEntry entry) {
+        StringBuilder text = new StringBuilder();
+        appendLowerCase(text, entry.getTitle());
+        text.append(SEPARATOR);
+        appendLowerCase(text, entry.getUsername());
+        text.append(SEPARATOR);
+        appendLowerCase(text, entry.getWebsite());
+        return text.toString();
+    }
+
+    private static long trigramKey(char a, char b, char c) {
+        return (long) a << 32 | (long) b << 16 | c;
+    }
+
+    private static boolean containsAllParts(String searchText, List<String> parts) {
+        for (String part : parts) {
+            if (searchText.indexOf(part) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toLowerCase(String text) {
+        StringBuilder lower = new StringBuilder(text.length());
+        appendLowerCase(lower, text);
+        return lower.toString();
+    }
+
+    private static void appendLowerCase(StringBuilder target, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            // Das Trennzeichen darf in keinem Feld und keiner Anfrage vorkommen
+            target.append(c == SEPARATOR ? ' ' : c);
+        }
+    }
+
+    /**
+     * Trägt die beim Aufnehmen gespeicherten Wörter, Vorschläge und Trigramme wieder aus
+     */
+    private void unindexTokens(int id) {
+        for (String term : completionTermsById.get(id)) {
+            completions.remove(term);
+        }
+        for (String token : tokensOf(searchTextById.get(id))) {
+            Postings list = postings.get(token);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(token);
+                    staleWords++;
+                }
+            }
+        }
+        unindexTrigrams(id);
+
+        // BK-Bäume unterstützen kein Löschen, daher bei vielen verwaisten Wörtern neu aufbauen
+        if (staleWords > 64 && staleWords > wordTree.size() / 2) {
+            wordTree.clear();
+            for (String word : postings.keySet()) {
+                wordTree.add(word);
+            }
+            staleWords = 0;
+        }
+    }
+
+    /**
+     * Wörter aller Felder, SEPARATOR trennt wie jedes andere Zeichen außer Buchstaben und Ziffern
+     */
+    private static Set<String> tokensOf(String searchText) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(searchText, tokens);
+        return new HashSet<>(tokens);
+    }
+
+    /**
+     * Zerlegt einen Text in kleingeschriebene Wörter aus Buchstaben und Ziffern
+     */
+    static void tokenize(String text, List<String> tokens) {
+        if (text == null) {
+            return;
+        }
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Bewertet Passwörter nach ihrer geschätzten Entropie
+ *
+ * Die Zeichenklasse wird über eine Tabelle für ASCII-Zeichen bestimmt, statt für jede
+ * Klasse einen regulären Ausdruck über das ganze Passwort laufen zu lassen. Die
+ * Entropie zufälliger Zeichen wird aus Länge und Größe des Zeichenvorrats der
+ * gefundenen Klassen geschätzt. {@link #analyze} erledigt das in einem Durchlauf ohne
+ * Allokation und füllt ein vom Aufrufer wiederverwendetes {@link Analysis}-Objekt.
+ * Nur {@link #score} berücksichtigt zusätzlich bekannte Muster über {@link PasswordPatterns}.
+ */
+public final class PasswordStrength {
+    public static final int UPPERCASE = 1;
+    public static final int LOWERCASE = 2;
+    public static final int NUMBERS = 4;
+    public static final int SYMBOLS = 8;
+    // Alle übrigen Zeichen: Leerzeichen, restliche ASCII-Sonderzeichen, Umlaute usw.
+    public static final int OTHER = 16;
+
+    private static final String SYMBOL_CHARS = "!@#$%^&*()_+-=[]{}|;:,.<>?";
+
+    // Geschätzte Größe des Zeichenvorrats für OTHER (restliches ASCII und gängige Nicht-ASCII-Zeichen)
+    private static final int OTHER_POOL_SIZE = 32;
+
+    // Ab dieser Entropie gilt ein Passwort als sehr stark (100 Punkte)
+    private static final double STRONG_ENTROPY_BITS = 80;
+
+    private static final byte[] CLASS_TABLE = new byte[128];
+
+    // log2 der Größe des Zeichenvorrats je Kombination der Klassen
+    private static final double[] LOG2_POOL = new double[32];
+
+    static {
+        for (int c = 0; c < CLASS_TABLE.length; c++) {
+            CLASS_TABLE[c] = OTHER;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASS_TABLE[c] = UPPERCASE;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASS_TABLE[c] = LOWERCASE;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASS_TABLE[c] = NUMBERS;
+        }
+        for (int i = 0; i < SYMBOL_CHARS.length(); i++) {
+            CLASS_TABLE[SYMBOL_CHARS.charAt(i)] = SYMBOLS;
+        }
+
+        for (int mask = 1; mask < LOG2_POOL.length; mask++) {
+            int pool = 0;
+            if ((mask & UPPERCASE) != 0) pool += 26;
+            if ((mask & LOWERCASE) != 0) pool += 26;
+            if ((mask & NUMBERS) != 0) pool += 10;
+            if ((mask & SYMBOLS) != 0) pool += SYMBOL_CHARS.length();
+            if ((mask & OTHER) != 0) pool += OTHER_POOL_SIZE;
+            LOG2_POOL[mask] = Math.log(pool) / Math.log(2);
+        }
+    }
+
+    /**
+     * Ergebnis einer Analyse, wird vom Aufrufer wiederverwendet
+     */
+    public static final class Analysis {
+        private int classes;
+        private int length;
+        private double entropyBits;
+
+        public int getClasses() {
+            return classes;
+        }
+
+        public boolean has(int characterClass) {
+            return (classes & characterClass) != 0;
+        }
+
+        public int getClassCount() {
+            return Integer.bitCount(classes);
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public double getEntropyBits() {
+            return entropyBits;
+        }
+
+        public int getScore() {
+            return scoreOf(entropyBits);
+        }
+    }
+
+    private PasswordStrength() {
+    }
+
+    /**
+     * Bestimmt Zeichenklassen, Länge und Entropie in einem Durchlauf
+     * Passt für zufällig aus dem Zeichenvorrat gezogene Passwörter, Muster werden nicht gesucht.
+     */
+    public static Analysis analyze(CharSequence password, Analysis result) {
+        int classes = characterClasses(password);
+        int length = password != null ? password.length() : 0;
+        result.classes = classes;
+        result.length = length;
+        result.entropyBits = entropyBits(classes, length);
+        return result;
+    }
+
+    /**
+     * Liefert die Bitmaske der im Passwort vorkommenden Zeichenklassen
+     */
+    public static int characterClasses(CharSequence password) {
+        if (password == null) {
+            return 0;
+        }
+
+        int classes = 0;
+        for (int i = 0, length = password.length(); i < length; i++) {
+            char c = password.charAt(i);
+            classes |= c < 128 ? CLASS_TABLE[c] : OTHER;
+        }
+        return classes;
+    }
+
+    /**
+     * Entropie in Bit für ein zufälliges Passwort dieser Länge aus dem Vorrat der Klassen
+     */
+    public static double entropyBits(int classes, int length) {
+        return length * LOG2_POOL[classes & (LOG2_POOL.length - 1)];
+    }
+
+    /**
+     * Bewertet die Stärke eines Passworts (0-100) nach der Entropie unter Berücksichtigung von Mustern
+     * Für vom Benutzer gewählte Passwörter; erzeugte Zufallspasswörter bewertet {@link #analyze} genauso gut.
+     */
+    public static int score(CharSequence password) {
+        if (password == null || password.length() == 0) {
+            return 0;
+        }
+        return scoreOf(PasswordPatterns.estimate(password).getEntropyBits());
+    }
+
+    /**
+     * Rechnet eine Entropie in Bit in die Punktzahl (0-100) um
+     */
+    public static int scoreOf(double entropyBits) {
+        return (int) Math.min(100, Math.round(entropyBits * 100 / STRONG_ENTROPY_BITS));
+    }
+}
@@ -0,0 +1,76 @@
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tabellenmodell, das direkt auf der Liste der angezeigten Einträge arbeitet
+ *
+ * Es werden keine Zeilen kopiert: Zellwerte werden erst beim Zeichnen aus dem Eintrag
+ * gelesen, das Datum wird nur für sichtbare Zellen formatiert. Ein Wechsel der Liste
+ * löst genau ein Ereignis für die ganze Tabelle aus.
+ */
+public class PasswordTableModel extends AbstractTableModel {
+    public static final int ACTIONS_COLUMN = 4;
+
+    private static final String[] COLUMNS = {"Titel", "Benutzername", "Website", "Erstellt", "Aktionen"};
+
+    // Nur im Event-Dispatch-Thread verwendet
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm");
+
+    private List<PasswordEntry> entries = new ArrayList<>();
+
+    /**
+     * Zeigt die übergebenen Einträge an, die Liste wird nicht kopiert
+     */
+    public void setEntries(List<PasswordEntry> entries) {
+        this.entries = entries;
+        fireTableDataChanged();
+    }
+
+    public PasswordEntry getEntryAt(int row) {
+        return row >= 0 && row < entries.size() ? entries.get(row) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return entries.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == ACTIONS_COLUMN; // Nur Actions-Spalte editierbar
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        PasswordEntry entry = entries.get(row);
+        switch (column) {
+            case 0:
+                return entry.getTitle();
+            case 1:
+                return entry.getUsername();
+            case 2:
+                return entry.getWebsite();
+            case 3:
+                return entry.getCreated() != null ? dateFormat.format(entry.getCreated()) : "";
+            default:
+                return "Aktionen";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Eingebettete Wortlisten für die Musterbewertung, nach Häufigkeit sortiert
+ *
+ * Die Listen stehen als durch Leerzeichen getrennte Zeichenketten in einer eigenen
+ * Klasse, sie werden daher erst geladen, wenn {@link PasswordPatterns} das
+ * Wörterbuch zum ersten Mal braucht.
+ */
+final class PasswordWordlists {
+    static final String PASSWORDS = "123456 password 12345678 qwerty 123456789 12345 1234 111111 1234567 "
+            + "dragon 123123 baseball abc123 football monkey letmein 696969 shadow master 666666 qwertyuiop "
+            + "123321 mustang 1234567890 michael 654321 superman 1qaz2wsx 7777777 121212 000000 qazwsx "
+            + "123qwe killer trustno1 jordan jennifer zxcvbnm asdfgh hunter buster soccer harley batman "
+            + "andrew tigger sunshine iloveyou 2000 charlie robert thomas hockey ranger daniel starwars "
+            + "112233 george computer michelle jessica pepper 1111 zxcvbn 555555 11111111 131313 freedom "
+            + "777777 pass maggie 159753 aaaaaa ginger princess joshua cheese amanda summer love ashley "
+            + "nicole chelsea matthew access yankees 987654321 dallas austin thunder taylor matrix william "
+            + "corvette hello martin heather secret merlin diamond 1234qwer hammer silver 222222 88888888 "
+            + "anthony justin test bailey q1w2e3r4t5 patrick internet scooter orange 11111 golfer cookie "
+            + "richard samantha bigdog guitar jackson whatever mickey chicken sparky snoopy maverick phoenix "
+            + "camaro peanut morgan welcome falcon cowboy ferrari samsung andrea smokey steelers joseph "
+            + "mercedes dakota arsenal eagles melissa boomer booboo spider nascar monster tigers yellow "
+            + "xxxxxx 123123123 gateway marina diablo bulldog qwer1234 compaq purple banana junior hannah "
+            + "123654 porsche lakers iceman money cowboys 987654 london tennis 999999 ncc1701 coffee scooby "
+            + "0000 miller boston q1w2e3r4 brandon yamaha chester mother forever johnny edward 333333 oliver "
+            + "redsox player nikita knight fender barney midnight please brandy chicago badboy slayer rangers "
+            + "charles angel flower bigdaddy rabbit wizard jasper enter rachel chris steven winner adidas "
+            + "victoria natasha 1q2w3e4r jasmine winter prince marine fishing cocacola casper james 232323 "
+            + "raiders 888888 marlboro gandalf asdfasdf crystal 87654321 12344321 golden 8675309 admin login "
+            + "passw0rd password1 password123 changeme default guest root toor abcdef qwertz asdf hallo "
+            + "passwort schatz geheim fussball schalke bayern borussia sommer sonne blume liebe engel mausi "
+            + "hase schatzi ichliebedich hallo123 passwort1 qwertz123 master123 admin123 welcome1 letmein1 "
+            + "iloveyou1";
+
+    static final String ENGLISH = "the and that was for are with his they this have from one had word but not "
+            + "what all were when your can said there use each which she how their will other about out many "
+            + "then them these some her would make like him into time has look two more write see number "
+            + "way could people than first water been call who oil its now find long down day did get come "
+            + "made may part over new sound take only little work know place year live back give most very "
+            + "after thing our just name good sentence man think say great where help through much before line "
+            + "right too mean old any same tell boy follow came want show also around form three small set put "
+            + "end does another well large must big even such because turn here why ask went men read need "
+            + "land different home move try kind hand picture again change off play spell air away animal "
+            + "house point page letter mother answer found study still learn should world high every near add "
+            + "food between own below country plant last school father keep tree never start city earth eye "
+            + "light thought head under story saw left few while along might close something seem next hard "
+            + "open example begin life always those both paper together got group often run important until "
+            + "children side feet car mile night walk white sea began grow took river four carry state once "
+            + "book hear stop without second later miss idea enough eat face watch far really almost let above "
+            + "girl sometimes mountain cut young talk soon list song being leave family happy beautiful summer "
+            + "winter spring autumn money power secret dragon master monkey shadow sunshine princess freedom "
+            + "flower heart angel magic";
+
+    static final String GERMAN = "der die und den von das mit sich des auf für ist dem nicht ein eine als auch "
+            + "werden aus hat dass sie nach wird bei einer sind noch wie einem über einen zum war haben nur "
+            + "oder aber vor zur bis mehr durch man sein wurde sei hatte kann gegen vom können schon wenn habe "
+            + "seine ihre dann unter wir soll ich eines jahr zwei jahren diese dieser wieder keine uhr seiner "
+            + "worden will zwischen immer ihr sagte was gibt alle diesem seit muss wurden beim doch jetzt waren "
+            + "drei jahre neue neuen damit bereits ihren seinen müssen ihrer nun viele haus herz liebe sonne "
+            + "mond stern himmel blume katze hund maus vogel pferd baum wald wasser feuer erde luft sommer "
+            + "winter herbst frühling montag dienstag mittwoch donnerstag freitag samstag sonntag januar "
+            + "februar märz april mai juni juli august september oktober november dezember schule arbeit "
+            + "familie freund freundin mutter vater bruder schwester kinder auto stadt land welt leben tag "
+            + "nacht morgen abend glück hallo danke bitte geheim schatz engel teufel drache könig königin "
+            + "ritter fussball musik computer internet passwort kennwort sicher";
+
+    static final String NAMES = "michael thomas andreas stefan christian peter daniel markus martin frank "
+            + "tobias alexander sebastian jan florian matthias sabine susanne petra claudia andrea nicole "
+            + "stefanie julia anna maria laura lisa sarah lena lukas leon paul jonas felix max ben finn elias "
+            + "noah emma mia hannah sophie marie lea james john robert william david richard joseph charles "
+            + "mary patricia jennifer linda elizabeth barbara jessica";
+
+    private PasswordWordlists() {
+    }
+}
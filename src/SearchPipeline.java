@@ -0,0 +1,168 @@
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Führt die Suche des Hauptfensters entprellt im Hintergrund aus
+ *
+ * Tastendrücke starten erst nach einer kurzen Pause eine Suche, die Abfrage läuft auf
+ * einem eigenen Thread statt im Event-Dispatch-Thread. Jede neue Suche erhält eine
+ * Generationsnummer: überholte Suchen werden vor dem Start übersprungen, ihre
+ * Ergebnisse werden verworfen, falls sie bereits liefen. Das Ergebnis wird in einem
+ * Schritt im Event-Dispatch-Thread übergeben.
+ * Vorschläge zur Eingabe ({@link #complete}) laufen ohne Entprellung auf demselben Thread
+ * und werden über eine eigene Generationsnummer ebenso verworfen, wenn sie überholt sind.
+ * {@link #schedule}, {@link #searchNow} und {@link #complete} werden im
+ * Event-Dispatch-Thread aufgerufen.
+ */
+public class SearchPipeline {
+    public static final int DEFAULT_DEBOUNCE_MILLIS = 150;
+
+    private final Function<String, List<PasswordEntry>> query;
+    private final Consumer<List<PasswordEntry>> publisher;
+    private final ExecutorService executor;
+    private final Timer debounceTimer;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong completionGeneration = new AtomicLong();
+
+    private String pendingTerm = "";
+
+    // Messwerte, bis auf die abgebrochenen Suchen nur im Event-Dispatch-Thread verändert
+    private final AtomicLong cancelledQueries = new AtomicLong();
+    private long completedQueries;
+    private long debouncedKeystrokes;
+    private long totalQueryNanos;
+    private long maxQueryNanos;
+
+    public SearchPipeline(Function<String, List<PasswordEntry>> query,
+                          Consumer<List<PasswordEntry>> publisher) {
+        this(query, publisher, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public SearchPipeline(Function<String, List<PasswordEntry>> query,
+                          Consumer<List<PasswordEntry>> publisher, int debounceMillis) {
+        this.query = query;
+        this.publisher = publisher;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vault-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.debounceTimer = new Timer(debounceMillis, e -> submit(pendingTerm));
+        this.debounceTimer.setRepeats(false);
+    }
+
+    /**
+     * Plant eine Suche nach einer Tipp-Pause ein, frühere geplante Suchen entfallen
+     */
+    public void schedule(String term) {
+        if (debounceTimer.isRunning()) {
+            debouncedKeystrokes++;
+        }
+        pendingTerm = term;
+        debounceTimer.restart();
+    }
+
+    /**
+     * Startet eine Suche sofort, z.B. nach Änderungen am Tresor
+     */
+    public void searchNow(String term) {
+        debounceTimer.stop();
+        submit(term);
+    }
+
+    /**
+     * Ermittelt Vorschläge im Hintergrund und übergibt sie mit dem Präfix im Event-Dispatch-Thread
+     */
+    public void complete(String prefix, Function<String, List<String>> completer,
+                         BiConsumer<String, List<String>> completionPublisher) {
+        long requestGeneration = completionGeneration.incrementAndGet();
+        executor.execute(() -> {
+            if (requestGeneration != completionGeneration.get()) {
+                return;
+            }
+
+            List<String> completions;
+            try {
+                completions = completer.apply(prefix);
+            } catch (RuntimeException e) {
+                System.err.println("Fehler bei den Vorschlägen: " + e.getMessage());
+                return;
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == completionGeneration.get()) {
+                    completionPublisher.accept(prefix, completions);
+                }
+            });
+        });
+    }
+
+    /**
+     * Verwirft noch laufende Vorschläge, z.B. wenn die Vorschlagsliste geschlossen wurde
+     */
+    public void cancelCompletions() {
+        completionGeneration.incrementAndGet();
+    }
+
+    public long getCompletedQueries() {
+        return completedQueries;
+    }
+
+    public long getCancelledQueries() {
+        return cancelledQueries.get();
+    }
+
+    public long getDebouncedKeystrokes() {
+        return debouncedKeystrokes;
+    }
+
+    public double getAverageQueryMillis() {
+        return completedQueries == 0 ? 0 : totalQueryNanos / (double) completedQueries / 1_000_000.0;
+    }
+
+    public double getMaxQueryMillis() {
+        return maxQueryNanos / 1_000_000.0;
+    }
+
+    private void submit(String term) {
+        long queryGeneration = generation.incrementAndGet();
+        executor.execute(() -> {
+            // Bereits überholte Suchen gar nicht erst ausführen
+            if (queryGeneration != generation.get()) {
+                cancelledQueries.incrementAndGet();
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            List<PasswordEntry> results;
+            try {
+                results = query.apply(term);
+            } catch (RuntimeException e) {
+                System.err.println("Fehler bei der Suche: " + e.getMessage());
+                return;
+            }
+            long queryNanos = System.nanoTime() - startTime;
+
+            SwingUtilities.invokeLater(() -> publish(queryGeneration, results, queryNanos));
+        });
+    }
+
+    private void publish(long queryGeneration, List<PasswordEntry> results, long queryNanos) {
+        if (queryGeneration != generation.get()) {
+            cancelledQueries.incrementAndGet();
+            return;
+        }
+
+        completedQueries++;
+        totalQueryNanos += queryNanos;
+        maxQueryNanos = Math.max(maxQueryNanos, queryNanos);
+        publisher.accept(results);
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Binäres, versioniertes Datensatzformat für Passwort-Einträge
+ *
+ * Aufbau: Magic {@code 00 'P' 'W' 'R'}, Versionsbyte, danach pro Eintrag ein Tag-Byte
+ * gefolgt von längenpräfixierten UTF-8 Feldern (Länge als Varint) und dem Erstellungsdatum
+ * als ZigZag-Varint. Ein Tag-Byte {@code 0} beendet die Daten.
+ * Ab Version 2 folgt auf das Tag-Byte die ID des Eintrags als Varint, Daten der
+ * Version 1 werden weiterhin gelesen und liefern Einträge ohne ID.
+ * Encoder und Decoder arbeiten direkt auf einem festen {@link ByteBuffer} und
+ * lesen bzw. schreiben die Daten blockweise aus einem bzw. in einen Stream.
+ */
+public class VaultCodec {
+    public static final byte VERSION = 2;
+    public static final int MAGIC_LENGTH = 4;
+
+    private static final byte[] MAGIC = {0x00, 'P', 'W', 'R'};
+    private static final byte TAG_END = 0;
+    private static final byte TAG_ENTRY = 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Obergrenze für ein einzelnes Feld, schützt vor beschädigten Längenangaben
+    private static final int MAX_FIELD_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Prüft ob die Daten mit dem Magic des Binärformats beginnen
+     */
+    public static boolean isBinaryFormat(byte[] data) {
+        if (data == null || data.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Kodiert einen einzelnen Eintrag vollständig (z.B. für einen Journal-Datensatz)
+     */
+    public static byte[] encodeEntry(PasswordEntry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        Encoder encoder = new Encoder(out);
+        encoder.writeEntry(entry);
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * Dekodiert den ersten Eintrag aus binären Daten, null wenn keiner enthalten ist
+     */
+    public static PasswordEntry decodeEntry(byte[] data) throws IOException {
+        return new Decoder(new ByteArrayInputStream(data)).readEntry();
+    }
+
+    /**
+     * Schreibt Einträge blockweise in einen Stream
+     */
+    public static class Encoder {
+        private final OutputStream out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        public Encoder(OutputStream out) throws IOException {
+            this.out = out;
+            buffer.put(MAGIC).put(VERSION);
+        }
+
+        public void writeEntry(PasswordEntry entry) throws IOException {
+            ensureCapacity(1);
+            buffer.put(TAG_ENTRY);
+            writeVarLong(entry.getId());
+            writeString(entry.getTitle());
+            writeString(entry.getUsername());
+            writeString(entry.getPassword());
+            writeString(entry.getWebsite());
+            writeVarLong(zigZag(entry.getCreated() != null ? entry.getCreated().getTime() : 0L));
+        }
+
+        /**
+         * Schreibt die Endmarkierung und leert den Puffer, ohne den Stream zu schließen
+         */
+        public void finish() throws IOException {
+            ensureCapacity(1);
+            buffer.put(TAG_END);
+            flushBuffer();
+            out.flush();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) value = "";
+
+            writeVarLong(utf8Length(value));
+
+            // UTF-8 direkt in den Puffer schreiben, ohne Zwischen-Array
+            for (int i = 0; i < value.length(); i++) {
+                ensureCapacity(4);
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    // Einzelnes Surrogat wie String.getBytes als '?' kodieren
+                    buffer.put((byte) '?');
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensureCapacity(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    length += 1;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Liest Einträge blockweise aus einem Stream
+     */
+    public static class Decoder {
+        private final InputStream in;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte version;
+        private boolean finished;
+
+        public Decoder(InputStream in) throws IOException {
+            this.in = in;
+            buffer.flip();
+
+            require(MAGIC.length + 1);
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new IOException("Keine binären Tresor-Daten");
+                }
+            }
+            version = buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Nicht unterstützte Datensatz-Version: " + version);
+            }
+        }
+
+        /**
+         * Liest den nächsten Eintrag, null am Ende der Daten
+         */
+        public PasswordEntry readEntry() throws IOException {
+            if (finished) {
+                return null;
+            }
+
+            require(1);
+            byte tag = buffer.get();
+            if (tag == TAG_END) {
+                finished = true;
+                return null;
+            }
+            if (tag != TAG_ENTRY) {
+                throw new IOException("Unbekannter Datensatz-Typ: " + tag);
+            }
+
+            PasswordEntry entry = new PasswordEntry();
+            if (version >= 2) {
+                entry.setId(readVarLong());
+            }
+            entry.setTitle(readString());
+            entry.setUsername(readString());
+            entry.setPassword(readString());
+            entry.setWebsite(readString());
+            entry.setCreated(new Date(unZigZag(readVarLong())));
+            return entry;
+        }
+
+        private String readString() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > MAX_FIELD_LENGTH) {
+                throw new IOException("Ungültige Feldlänge: " + length);
+            }
+
+            int size = (int) length;
+            if (size <= buffer.capacity()) {
+                require(size);
+                String value = new String(buffer.array(), buffer.position(), size, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + size);
+                return value;
+            }
+
+            // Feld größer als der Puffer: einmalig ein passendes Array verwenden
+            byte[] data = new byte[size];
+            int copied = buffer.remaining();
+            buffer.get(data, 0, copied);
+            while (copied < size) {
+                int read = in.read(data, copied, size - copied);
+                if (read < 0) {
+                    throw new EOFException("Unerwartetes Ende der Tresor-Daten");
+                }
+                copied += read;
+            }
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Ungültiger Varint in Tresor-Daten");
+        }
+
+        /**
+         * Stellt sicher, dass mindestens die angegebene Anzahl Bytes im Puffer liegt
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+                if (read < 0) {
+                    throw new EOFException("Unerwartetes Ende der Tresor-Daten");
+                }
+                buffer.position(buffer.position() + read);
+            }
+            buffer.flip();
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
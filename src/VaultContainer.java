@@ -0,0 +1,433 @@
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.Mac;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Binärer Container für verschlüsselte Tresor-Dateien
+ *
+ * Aufbau: Magic {@code 'P' 'W' 'M' 'V'}, Formatversion, Salt-Länge, Salt, IV,
+ * AES-CBC Chiffretext und abschließend ein HMAC-SHA256 über alle vorherigen Bytes.
+ * Ersetzt die frühere Base64-Textdatei, die um ein Drittel größer war und vor dem
+ * Dekodieren mehrfach per Regex bereinigt und geprüft werden musste.
+ *
+ * Neue Tresore werden im segmentierten Format ({@link ChunkedVaultFile}) gespeichert,
+ * Container der Version 1 werden nur noch gelesen und beim Öffnen migriert.
+ *
+ * Große Dateien ab {@link #MAPPED_READ_THRESHOLD} werden per {@link FileChannel#map}
+ * eingeblendet und direkt aus dem eingeblendeten Bereich authentifiziert und entschlüsselt,
+ * kleinere Dateien werden blockweise über positionsbasierte Lesezugriffe gelesen.
+ * Beide Wege verwenden wiederverwendbare Puffer aus einem gemeinsamen Pool.
+ * Eine Einblendung wird nach dem Lesen sofort wieder freigegeben ({@link #unmap}),
+ * damit die Datei anschließend ersetzt werden kann. Lässt die Laufzeitumgebung das
+ * nicht zu, wird immer gepuffert gelesen.
+ */
+public class VaultContainer {
+    public static final byte VERSION = 1;
+    public static final int SALT_LENGTH = 16;
+
+    // Ab dieser Dateigröße lohnt sich das Einblenden gegenüber gepufferten Lesezugriffen
+    public static final long MAPPED_READ_THRESHOLD = 4L * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'P', 'W', 'M', 'V'};
+    private static final int IV_LENGTH = 16;
+    private static final int MAC_LENGTH = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    // sun.misc.Unsafe#invokeCleaner, null wenn nicht verfügbar
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Erzeugt ein neues zufälliges Salt für einen Tresor
+     */
+    public static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * Blendet eine große Datei zum Lesen ein
+     * Liefert null für kleine Dateien oder wenn die Einblendung nicht deterministisch
+     * freigegeben werden kann, der Aufrufer liest dann gepuffert.
+     */
+    static MappedByteBuffer mapForReading(FileChannel channel, long size) throws IOException {
+        if (size < MAPPED_READ_THRESHOLD || size > Integer.MAX_VALUE || INVOKE_CLEANER == null) {
+            return null;
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Gibt eine Einblendung sofort frei statt erst beim nächsten Garbage-Collector-Lauf
+     * Danach darf weder der Puffer noch ein daraus erzeugter Ausschnitt verwendet werden.
+     */
+    static void unmap(MappedByteBuffer mapped) {
+        if (mapped == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, mapped);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Einblendung konnte nicht freigegeben werden: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prüft anhand des Magic, ob eine Datei im Container-Format vorliegt
+     */
+    public static boolean isContainer(FileChannel channel) throws IOException {
+        if (channel.size() < MAGIC.length) {
+            return false;
+        }
+
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        readFully(channel, magic, 0);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Liest einen Container aus einem Dateikanal
+     * Beim Öffnen wird zuerst der MAC über die ganze Datei geprüft, sodass ein falsches
+     * Master-Passwort oder manipulierte Daten erkannt werden, bevor etwas entschlüsselt wird.
+     * {@link #close} gibt eine Einblendung wieder frei.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final EncryptionManager encryptionManager;
+        private final byte[] salt;
+        private final byte[] iv;
+        private final long bodyOffset;
+        private final long bodyLength;
+        private MappedByteBuffer mapped;
+        private final byte[] token;
+        private final boolean wasMapped;
+
+        public Reader(FileChannel channel, EncryptionManager encryptionManager) throws Exception {
+            this.channel = channel;
+            this.encryptionManager = encryptionManager;
+
+            long size = channel.size();
+            ByteBuffer fixed = ByteBuffer.allocate(MAGIC.length + 2);
+            if (size < fixed.capacity()) {
+                throw new IOException("Tresor-Datei ist zu kurz");
+            }
+            readFully(channel, fixed, 0);
+            fixed.position(MAGIC.length);
+
+            byte version = fixed.get();
+            if (version != VERSION) {
+                throw new IOException("Nicht unterstützte Tresor-Version: " + version);
+            }
+
+            int saltLength = fixed.get() & 0xFF;
+            long headerLength = fixed.capacity() + saltLength + IV_LENGTH;
+            if (size < headerLength + MAC_LENGTH) {
+                throw new IOException("Tresor-Datei ist zu kurz");
+            }
+
+            ByteBuffer variable = ByteBuffer.allocate(saltLength + IV_LENGTH);
+            readFully(channel, variable, fixed.capacity());
+            this.salt = new byte[saltLength];
+            this.iv = new byte[IV_LENGTH];
+            variable.flip();
+            variable.get(salt).get(iv);
+
+            this.bodyOffset = headerLength;
+            this.bodyLength = size - headerLength - MAC_LENGTH;
+            this.mapped = mapForReading(channel, size);
+            try {
+                this.token = mapped != null ? authenticateMapped(size) : authenticate(size);
+            } catch (Exception e) {
+                close();
+                throw e;
+            }
+            this.wasMapped = mapped != null;
+        }
+
+        /**
+         * Gibt die Einblendung frei, danach ist kein Klartext-Stream mehr lesbar
+         */
+        @Override
+        public void close() {
+            unmap(mapped);
+            mapped = null;
+        }
+
+        /**
+         * Gibt an, ob die Datei eingeblendet statt gepuffert gelesen wird
+         */
+        public boolean isMapped() {
+            return wasMapped;
+        }
+
+        public byte[] getSalt() {
+            return salt.clone();
+        }
+
+        /**
+         * Gibt den geprüften MAC zurück, der den Snapshot eindeutig identifiziert
+         */
+        public byte[] getToken() {
+            return token.clone();
+        }
+
+        /**
+         * Öffnet einen Stream, der den Klartext blockweise entschlüsselt
+         */
+        public InputStream plaintextStream() throws Exception {
+            Cipher cipher = encryptionManager.createVaultCipher(Cipher.DECRYPT_MODE, salt, iv);
+            if (mapped != null) {
+                return new MappedCipherInputStream(region(bodyOffset, bodyLength), cipher);
+            }
+            return new CipherInputStream(new ChannelRegionInputStream(channel, bodyOffset, bodyLength), cipher);
+        }
+
+        private byte[] authenticate(long size) throws Exception {
+            Mac mac = encryptionManager.createVaultMac(salt);
+            ByteBuffer buffer = acquireBuffer();
+            long position = 0;
+            long macOffset = size - MAC_LENGTH;
+
+            try {
+                while (position < macOffset) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(BUFFER_SIZE, macOffset - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new EOFException("Unerwartetes Ende der Tresor-Datei");
+                    }
+                    buffer.flip();
+                    mac.update(buffer);
+                    position += read;
+                }
+            } finally {
+                releaseBuffer(buffer);
+            }
+
+            ByteBuffer stored = ByteBuffer.allocate(MAC_LENGTH);
+            readFully(channel, stored, macOffset);
+            return verify(mac.doFinal(), stored.array());
+        }
+
+        private byte[] authenticateMapped(long size) throws Exception {
+            Mac mac = encryptionManager.createVaultMac(salt);
+            mac.update(region(0, size - MAC_LENGTH));
+
+            byte[] stored = new byte[MAC_LENGTH];
+            region(size - MAC_LENGTH, MAC_LENGTH).get(stored);
+            return verify(mac.doFinal(), stored);
+        }
+
+        private ByteBuffer region(long offset, long length) {
+            ByteBuffer region = mapped.duplicate();
+            region.position((int) offset);
+            region.limit((int) (offset + length));
+            return region.slice();
+        }
+
+        private byte[] verify(byte[] computed, byte[] stored) throws IOException {
+            if (!MessageDigest.isEqual(computed, stored)) {
+                throw new IOException("Tresor konnte nicht authentifiziert werden (falsches Master-Passwort oder beschädigte Datei)");
+            }
+            return computed;
+        }
+    }
+
+    /**
+     * Holt einen Puffer aus dem Pool oder legt einen neuen an
+     * Die Kapazität reicht für einen Lese-Block plus einen zusätzlichen Cipher-Block.
+     */
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(BUFFER_SIZE + IV_LENGTH);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unerwartetes Ende der Tresor-Datei");
+            }
+        }
+    }
+
+    /**
+     * Liest einen Bereich eines Dateikanals über positionsbasierte Zugriffe
+     */
+    private static class ChannelRegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private ByteBuffer buffer = acquireBuffer();
+        private long position;
+        private final long end;
+
+        ChannelRegionInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+            buffer.flip();
+        }
+
+        @Override
+        public void close() {
+            // Der Kanal gehört dem Aufrufer, nur den Puffer zurückgeben
+            if (buffer != null) {
+                releaseBuffer(buffer);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            if (buffer == null) {
+                throw new IOException("Stream ist geschlossen");
+            }
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            if (position >= end) {
+                return false;
+            }
+
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+            int read = channel.read(buffer, position);
+            buffer.flip();
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+            return true;
+        }
+    }
+
+    /**
+     * Entschlüsselt direkt aus einem eingeblendeten Dateibereich in einen Puffer aus dem Pool
+     * Im Gegensatz zu {@link CipherInputStream} wird der Chiffretext dabei nicht erst
+     * in ein eigenes Array kopiert.
+     */
+    private static class MappedCipherInputStream extends InputStream {
+        private final ByteBuffer source;
+        private final Cipher cipher;
+        private ByteBuffer output = acquireBuffer();
+        private boolean finished;
+
+        MappedCipherInputStream(ByteBuffer source, Cipher cipher) {
+            this.source = source;
+            this.cipher = cipher;
+            output.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return output.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int count = Math.min(len, output.remaining());
+            output.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (output != null) {
+                releaseBuffer(output);
+                output = null;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (output == null) {
+                throw new IOException("Stream ist geschlossen");
+            }
+
+            while (!output.hasRemaining()) {
+                if (finished) {
+                    return false;
+                }
+
+                output.clear();
+                try {
+                    if (source.hasRemaining()) {
+                        ByteBuffer block = source.slice();
+                        block.limit(Math.min(BUFFER_SIZE, block.remaining()));
+                        source.position(source.position() + block.limit());
+                        cipher.update(block, output);
+                    } else {
+                        cipher.doFinal(ByteBuffer.allocate(0), output);
+                        finished = true;
+                    }
+                } catch (Exception e) {
+                    throw new IOException("Entschlüsselung fehlgeschlagen: " + e.getMessage(), e);
+                }
+                output.flip();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only Journal für Änderungen an einem Tresor
+ * Jede Änderung wird als einzeln verschlüsselter und authentifizierter Datensatz
+ * an die Datei {@code <tresor>.journal} angehängt und beim Laden auf den letzten
+ * Snapshot angewendet. Das Journal ist über ein Token an genau einen Snapshot gebunden,
+ * nach einem neuen Snapshot wird ein veraltetes Journal ignoriert.
+ *
+ * Datensätze, die während des Schreibens eines Snapshots hinzukommen, sind nicht darin
+ * enthalten. {@link #prepareRebase} schreibt sie vor dem Umschalten auf den neuen Snapshot
+ * in eine an dessen Token gebundene Folgedatei {@code <tresor>.journal.next}, die
+ * {@link #commitRebase} danach an die Stelle des Journals setzt. Stürzt das Programm
+ * dazwischen ab, übernimmt {@link #readRecords} die Folgedatei, wenn ihr Token passt.
+ */
+public class VaultJournal {
+    public static final byte OP_ADD = 1;
+    public static final byte OP_REMOVE = 2;
+    public static final byte OP_UPDATE = 3;
+
+    private static final byte[] MAGIC = {'P', 'W', 'M', 'J'};
+    private static final byte VERSION = 1;
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private final File journalFile;
+    private final File nextJournalFile;
+    private final EncryptionManager encryptionManager;
+
+    private byte[] snapshotToken;
+    private long recordCount;
+    private long validLength;
+
+    // Vorbereiteter Wechsel auf einen neuen Snapshot, null wenn keiner ansteht
+    private byte[] rebaseToken;
+    private long rebaseRecordCount;
+    private long rebaseLength;
+
+    public VaultJournal(File vaultFile, EncryptionManager encryptionManager) {
+        this.journalFile = new File(vaultFile.getAbsolutePath() + ".journal");
+        this.nextJournalFile = new File(vaultFile.getAbsolutePath() + ".journal.next");
+        this.encryptionManager = encryptionManager;
+    }
+
+    /**
+     * Ein einzelner, entschlüsselter Journal-Eintrag
+     */
+    public static class Record {
+        public final byte operation;
+        public final int index;
+        public final byte[] payload;
+
+        public Record(byte operation, int index, byte[] payload) {
+            this.operation = operation;
+            this.index = index;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Liest alle gültigen Datensätze, die zum angegebenen Snapshot gehören
+     * Ein abgeschnittener oder nicht authentifizierbarer Rest (z.B. nach einem Absturz
+     * während des Schreibens) wird verworfen.
+     */
+    public List<Record> readRecords(byte[] token) throws Exception {
+        this.snapshotToken = token;
+        this.recordCount = 0;
+        this.validLength = 0;
+        this.rebaseToken = null;
+
+        if (nextJournalFile.exists()) {
+            // Absturz nach dem Umschalten auf einen neuen Snapshot, aber vor dem Ersetzen des Journals
+            if (Arrays.equals(readToken(nextJournalFile), token)) {
+                moveFile(nextJournalFile, journalFile);
+            } else if (!nextJournalFile.delete()) {
+                System.err.println("Veraltete Journal-Folgedatei konnte nicht gelöscht werden: "
+                        + nextJournalFile.getAbsolutePath());
+            }
+        }
+
+        List<Record> records = new ArrayList<>();
+        this.validLength = readFile(journalFile, token, records);
+        this.recordCount = records.size();
+        return records;
+    }
+
+    /**
+     * Liest die gültigen Datensätze einer Journal-Datei
+     *
+     * @return Länge des gültigen Teils der Datei, 0 wenn sie fehlt oder zu einem anderen Snapshot gehört
+     */
+    private long readFile(File file, byte[] token, List<Record> records) throws Exception {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] storedToken = readHeader(in);
+            if (storedToken == null) {
+                System.err.println("Unbekanntes Journal-Format, Journal wird ignoriert");
+                return 0;
+            }
+            if (!Arrays.equals(storedToken, token)) {
+                // Journal gehört zu einem älteren Snapshot und ist bereits darin enthalten
+                return 0;
+            }
+
+            long offset = MAGIC.length + 2 + storedToken.length;
+            validLength = offset;
+
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    System.err.println("Ungültige Journal-Datensatzlänge, Rest wird verworfen");
+                    break;
+                }
+
+                byte[] data = new byte[length];
+                try {
+                    in.readFully(data);
+                } catch (EOFException e) {
+                    System.err.println("Unvollständiger Journal-Datensatz wird verworfen");
+                    break;
+                }
+
+                byte[] plain;
+                try {
+                    plain = encryptionManager.decryptRecord(data, associatedData(token, records.size()));
+                } catch (Exception e) {
+                    System.err.println("Journal-Datensatz konnte nicht authentifiziert werden: " + e.getMessage());
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(plain);
+                byte operation = buffer.get();
+                int index = buffer.getInt();
+                byte[] payload = new byte[buffer.remaining()];
+                buffer.get(payload);
+                records.add(new Record(operation, index, payload));
+
+                offset += 4 + length;
+                validLength = offset;
+            }
+        } catch (EOFException e) {
+            System.err.println("Journal-Kopf unvollständig, Journal wird ignoriert");
+            return 0;
+        }
+
+        return validLength;
+    }
+
+    /**
+     * Liest das Token aus dem Kopf einer Journal-Datei, null wenn er unbrauchbar ist
+     */
+    private byte[] readToken(File file) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return readHeader(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] readHeader(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.readByte() != VERSION) {
+            return null;
+        }
+
+        byte[] storedToken = new byte[in.readUnsignedByte()];
+        in.readFully(storedToken);
+        return storedToken;
+    }
+
+    /**
+     * Hängt einen Datensatz an das Journal an und schreibt ihn dauerhaft auf den Datenträger
+     */
+    public void append(byte operation, int index, byte[] payload) throws Exception {
+        if (snapshotToken == null) {
+            throw new IllegalStateException("Journal ist an keinen Snapshot gebunden");
+        }
+
+        ByteBuffer record = encodeRecord(snapshotToken, recordCount, operation, index, payload);
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (validLength == 0) {
+                channel.truncate(0);
+                validLength = writeFully(channel, 0, header(snapshotToken));
+            } else if (channel.size() > validLength) {
+                // Verworfenen Rest eines abgebrochenen Schreibvorgangs abschneiden
+                channel.truncate(validLength);
+            }
+
+            validLength += writeFully(channel, validLength, record);
+            channel.force(false);
+        }
+
+        recordCount++;
+    }
+
+    /**
+     * Bereitet den Wechsel auf einen neuen Snapshot vor, der die ersten Datensätze bereits enthält
+     * Die übrigen Datensätze werden an das neue Token gebunden in die Folgedatei geschrieben.
+     * Bis {@link #commitRebase} bleibt das bisherige Journal gültig.
+     *
+     * @param savedRecords Anzahl der Datensätze, die im neuen Snapshot enthalten sind
+     */
+    public void prepareRebase(byte[] token, long savedRecords) throws Exception {
+        this.rebaseToken = null;
+        long length = 0;
+        List<Record> remaining = new ArrayList<>();
+
+        if (savedRecords < recordCount) {
+            List<Record> records = new ArrayList<>();
+            readFile(journalFile, snapshotToken, records);
+            if (records.size() != recordCount) {
+                throw new IOException("Journal enthält " + records.size() + " statt " + recordCount + " Datensätze");
+            }
+            remaining = records.subList((int) savedRecords, records.size());
+
+            try (FileChannel channel = FileChannel.open(nextJournalFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                length = writeFully(channel, 0, header(token));
+                for (int i = 0; i < remaining.size(); i++) {
+                    Record record = remaining.get(i);
+                    length += writeFully(channel, length,
+                            encodeRecord(token, i, record.operation, record.index, record.payload));
+                }
+                channel.force(true);
+            }
+        }
+
+        this.rebaseToken = token;
+        this.rebaseRecordCount = remaining.size();
+        this.rebaseLength = length;
+    }
+
+    /**
+     * Bindet das Journal an den neuen Snapshot, nachdem dieser gültig geworden ist
+     * Danach enthält es nur noch die Datensätze, die nicht im Snapshot stehen.
+     */
+    public void commitRebase() throws IOException {
+        if (rebaseToken == null) {
+            throw new IllegalStateException("Kein Wechsel des Journals vorbereitet");
+        }
+
+        byte[] token = rebaseToken;
+        this.rebaseToken = null;
+        if (rebaseRecordCount == 0) {
+            reset(token);
+            return;
+        }
+
+        moveFile(nextJournalFile, journalFile);
+        this.snapshotToken = token;
+        this.recordCount = rebaseRecordCount;
+        this.validLength = rebaseLength;
+    }
+
+    /**
+     * Bindet das Journal an einen neuen Snapshot und verwirft alle bisherigen Datensätze
+     */
+    public void reset(byte[] token) {
+        this.snapshotToken = token;
+        this.recordCount = 0;
+        this.validLength = 0;
+        this.rebaseToken = null;
+
+        if (journalFile.exists() && !journalFile.delete()) {
+            // Nicht löschbar: wird beim nächsten Laden über das Token als veraltet erkannt
+            System.err.println("Journal konnte nicht gelöscht werden: " + journalFile.getAbsolutePath());
+        }
+        if (nextJournalFile.exists() && !nextJournalFile.delete()) {
+            System.err.println("Journal-Folgedatei konnte nicht gelöscht werden: " + nextJournalFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Gibt die Anzahl der Datensätze seit dem letzten Snapshot zurück
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private ByteBuffer header(byte[] token) {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 2 + token.length);
+        header.put(MAGIC).put(VERSION).put((byte) token.length).put(token).flip();
+        return header;
+    }
+
+    private ByteBuffer encodeRecord(byte[] token, long sequence, byte operation, int index,
+                                    byte[] payload) throws Exception {
+        ByteBuffer plain = ByteBuffer.allocate(5 + payload.length);
+        plain.put(operation).putInt(index).put(payload);
+        byte[] record = encryptionManager.encryptRecord(plain.array(), associatedData(token, sequence));
+
+        ByteBuffer out = ByteBuffer.allocate(4 + record.length);
+        out.putInt(record.length).put(record).flip();
+        return out;
+    }
+
+    private byte[] associatedData(byte[] token, long sequence) {
+        // Token und Laufnummer verhindern Vertauschen und Wiederverwenden von Datensätzen
+        ByteBuffer aad = ByteBuffer.allocate(token.length + 8);
+        aad.put(token).putLong(sequence);
+        return aad.array();
+    }
+
+    private static void moveFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private long writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
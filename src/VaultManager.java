@@ -1,31 +1,146 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Verwaltet das Laden und Speichern von Passwort-Tresoren
  * Arbeitet mit verschlüsselten .vault Dateien
+ * Thread-sicher über eine faire Lese-/Schreibsperre: Änderungen und Laden laufen exklusiv,
+ * Suchen teilen sich die Lesesperre, ein wartender Schreiber wird von später kommenden
+ * Lesern nicht überholt. Anzahl und Name werden über ein {@link StampedLock} optimistisch
+ * ohne Sperre gelesen, die Momentaufnahme aller Einträge wird lock-frei veröffentlicht.
+ * Beim Speichern wird unter der Schreibsperre nur der Stand festgehalten; Verschlüsseln
+ * und Schreiben laufen danach ohne sie, nur das Umschalten auf die neue Datei ist wieder
+ * exklusiv. Speichervorgänge reiht eine eigene Sperre hintereinander ein, sie wird immer
+ * vor der Schreibsperre genommen.
+ * Jede Änderung steht sofort im Journal. Mit verzögertem Speichern ({@link #setWriteBehindDelay})
+ * fasst ein Hintergrund-Thread nur das Schreiben der Chunks und das Verdichten des Journals
+ * für alle Änderungen innerhalb der Verzögerung zusammen.
  */
 public class VaultManager {
+    // Ab so vielen Journal-Einträgen wird beim nächsten Ändern ein neuer Snapshot geschrieben
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 512;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
     private File currentVaultFile;
     private EncryptionManager encryptionManager;
     private List<PasswordEntry> passwords;
+    private final PasswordSearchIndex searchIndex = new PasswordSearchIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    // Nur für optimistisches Lesen, wird von acquireWriteLock zusätzlich zur Schreibsperre genommen
+    private final StampedLock versionLock = new StampedLock();
+
+    // Reiht Speichervorgänge hintereinander ein, immer vor der Schreibsperre zu nehmen
+    private final ReentrantLock saveLock = new ReentrantLock();
+    private final Map<Long, PasswordEntry> entriesById = new HashMap<>();
+    private long nextEntryId = 1;
+
+    // Unveränderliche Momentaufnahme von passwords, null nach jeder Änderung bis zum nächsten Lesen
+    private volatile List<PasswordEntry> passwordsView;
+    private VaultJournal journal;
+    private VaultSnapshotWorker snapshotWorker;
+
+    // Salt und Schlüsselableitung des geöffneten Tresors, werden über alle Speichervorgänge beibehalten
+    private byte[] vaultSalt;
+    private KeyDerivation vaultKeyDerivation;
+
+    // Schlüsselableitung für neue Tresore, null für automatische Kalibrierung
+    private KeyDerivation configuredKeyDerivation;
+
+    // Chunk-Aufteilung der Tresor-Datei, null wenn beim nächsten Speichern alles geschrieben wird
+    private ChunkedVaultFile vaultLayout;
+
+    // Wird gesetzt, wenn der geladene Snapshot noch in einem alten Format vorlag
+    private boolean legacyFormatLoaded;
+
+    // Wird gesetzt, wenn beim Laden Einträgen ohne (eindeutige) ID eine neue ID zugewiesen wurde
+    private boolean entryIdsAssigned;
+
+    // Verzögerung für das gesammelte Schreiben der Chunks, 0 verdichtet erst ab JOURNAL_COMPACTION_THRESHOLD
+    private volatile long writeBehindMillis;
+    private final ScheduledExecutorService saveExecutor;
+
+    // Noch nicht begonnenes Speichern im Hintergrund, geschützt durch saveMonitor
+    private final Object saveMonitor = new Object();
+    private CompletableFuture<Boolean> scheduledSave;
+    private ScheduledFuture<?> scheduledSaveTask;
+
+    // Änderungen seit dem letzten Speichern, die weder im Snapshot noch im Journal stehen
+    private int unsavedChanges;
 
     public VaultManager() {
         this.encryptionManager = new EncryptionManager();
         this.passwords = new ArrayList<>();
+        this.snapshotWorker = new VaultSnapshotWorker();
+        this.saveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vault-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Nimmt die Schreibsperre und macht laufende optimistische Lesezugriffe ungültig
+     * Der Versionsstempel ist nicht wiedereintrittsfähig, darf also nicht verschachtelt werden.
+     */
+    private long acquireWriteLock() {
+        lock.writeLock().lock();
+        return versionLock.writeLock();
+    }
+
+    private void releaseWriteLock(long stamp) {
+        versionLock.unlockWrite(stamp);
+        lock.writeLock().unlock();
     }
 
     /**
      * Erstellt einen neuen Tresor mit dem angegebenen Master-Passwort
      */
     public boolean createNewVault(File vaultFile, String masterPassword) {
+        saveLock.lock();
+        long stamp = acquireWriteLock();
+        try {
+            return createVault(vaultFile, masterPassword);
+        } finally {
+            releaseWriteLock(stamp);
+            saveLock.unlock();
+        }
+    }
+
+    private boolean createVault(File vaultFile, String masterPassword) {
+        if (!writeUnsavedChanges()) {
+            System.err.println("Bisheriger Tresor bleibt geöffnet, ausstehende Änderungen wurden nicht geschrieben");
+            return false;
+        }
+        this.unsavedChanges = 0;
         try {
-            encryptionManager.deriveKeyFromPassword(masterPassword);
+            this.vaultSalt = VaultContainer.newSalt();
+            this.vaultKeyDerivation = newVaultKeyDerivation();
+            encryptionManager.deriveKeyFromPassword(masterPassword, vaultKeyDerivation, vaultSalt);
             this.currentVaultFile = vaultFile;
+            this.journal = new VaultJournal(vaultFile, encryptionManager);
+            this.vaultLayout = null;
             this.passwords.clear();
+            this.passwordsView = null;
+            this.searchIndex.clear();
+            this.entriesById.clear();
+            this.nextEntryId = 1;
 
             // Erstelle leere Vault-Datei
-            saveVault();
+            writeVault();
             return true;
 
         } catch (Exception e) {
@@ -38,57 +153,221 @@ public class VaultManager {
      * Lädt einen existierenden Tresor mit dem Master-Passwort
      */
     public boolean loadVault(File vaultFile, String masterPassword) {
+        saveLock.lock();
+        long stamp = acquireWriteLock();
+        try {
+            return openVault(vaultFile, masterPassword);
+        } finally {
+            releaseWriteLock(stamp);
+            saveLock.unlock();
+        }
+    }
+
+    private boolean openVault(File vaultFile, String masterPassword) {
+        if (!writeUnsavedChanges()) {
+            System.err.println("Bisheriger Tresor bleibt geöffnet, ausstehende Änderungen wurden nicht geschrieben");
+            return false;
+        }
+        this.unsavedChanges = 0;
         try {
             if (!vaultFile.exists()) {
                 throw new FileNotFoundException("Tresor-Datei nicht gefunden: " + vaultFile.getPath());
             }
 
-            encryptionManager.deriveKeyFromPassword(masterPassword);
+            // Schlüssel eines vorher geöffneten Tresors nicht wiederverwenden
+            encryptionManager.clearKey();
             this.currentVaultFile = vaultFile;
+            this.journal = new VaultJournal(vaultFile, encryptionManager);
 
             // Lade und entschlüssele Vault-Daten
-            String fileContent = readFileContent(vaultFile);
+            readSnapshot(vaultFile, masterPassword);
+
+            // Alte Tresore beim ersten Öffnen ins segmentierte Format mit gesalzener Ableitung überführen
+            if (legacyFormatLoaded || vaultKeyDerivation.isLegacy()) {
+                migrateVault(masterPassword);
+            } else if (entryIdsAssigned) {
+                // Neu vergebene IDs sofort sichern, damit sie beim nächsten Öffnen gleich bleiben
+                this.vaultLayout = null;
+                writeVault();
+            }
+            return true;
+
+        } catch (Exception e) {
+            System.err.println("Fehler beim Laden des Tresors: " + e.getMessage());
+            e.printStackTrace();
 
-            // Debug-Ausgabe
-            System.out.println("Gelesener Dateiinhalt (erste 100 Zeichen): " +
-                    fileContent.substring(0, Math.min(100, fileContent.length())));
+            // Versuche Recovery-Modus
+            return attemptVaultRecovery(vaultFile, masterPassword);
+        }
+    }
 
-            if (fileContent.trim().isEmpty()) {
-                // Leere Datei - neuer Tresor
+    /**
+     * Liest einen Snapshot, entschlüsselt ihn und spielt das zugehörige Journal nach
+     * Segmentierte Tresore werden chunkweise parallel entschlüsselt, Container der
+     * Version 1 und alte Base64-Dateien werden nur noch importiert.
+     */
+    private void readSnapshot(File snapshotFile, String masterPassword) throws Exception {
+        this.passwordsView = null;
+        this.legacyFormatLoaded = false;
+        this.vaultLayout = null;
+
+        byte[] token;
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            if (ChunkedVaultFile.isChunkedVault(channel)) {
+                ChunkedVaultFile.Header header = ChunkedVaultFile.readHeader(channel);
+                unlock(masterPassword, header.keyDerivation, header.salt);
+
+                ChunkedVaultFile.Snapshot snapshot = ChunkedVaultFile.read(channel, encryptionManager);
                 this.passwords.clear();
-                return true;
+                this.passwords.addAll(snapshot.entries);
+                this.vaultSalt = snapshot.layout.getSalt();
+                this.vaultKeyDerivation = snapshot.layout.getKeyDerivation();
+                this.vaultLayout = snapshot.layout;
+                token = snapshot.layout.getToken();
+            } else if (VaultContainer.isContainer(channel)) {
+                // Container der Version 1: lesen und beim Öffnen ins segmentierte Format überführen
+                unlock(masterPassword, KeyDerivation.legacySha256(), null);
+                try (VaultContainer.Reader reader = new VaultContainer.Reader(channel, encryptionManager);
+                     InputStream plainIn = reader.plaintextStream()) {
+                    parsePasswordData(plainIn);
+                    this.vaultSalt = reader.getSalt();
+                    token = reader.getToken();
+                }
+                this.vaultKeyDerivation = KeyDerivation.legacySha256();
+                this.legacyFormatLoaded = true;
+            } else {
+                unlock(masterPassword, KeyDerivation.legacySha256(), null);
+                token = readLegacySnapshot(snapshotFile);
+                this.vaultSalt = VaultContainer.newSalt();
+                this.vaultKeyDerivation = KeyDerivation.legacySha256();
+                this.legacyFormatLoaded = true;
             }
+        }
 
-            // Bereinige den Dateiinhalt (entferne Whitespace und Zeilenumbrüche)
-            String cleanedContent = cleanBase64Content(fileContent);
+        // Änderungen seit dem letzten Snapshot aus dem Journal nachspielen
+        replayJournal(token);
+        searchIndex.rebuild(passwords);
+        this.entryIdsAssigned = indexEntryIds();
+    }
 
-            if (cleanedContent.isEmpty()) {
-                // Nach Bereinigung leer - behandle als neuen Tresor
-                this.passwords.clear();
-                return true;
-            }
+    /**
+     * Baut die Zuordnung von IDs zu Einträgen neu auf und vergibt fehlende oder doppelte IDs
+     * Neue IDs beginnen nach der höchsten vorhandenen ID.
+     *
+     * @return true, wenn mindestens eine ID neu vergeben wurde
+     */
+    private boolean indexEntryIds() {
+        long maxId = 0;
+        for (PasswordEntry entry : passwords) {
+            maxId = Math.max(maxId, entry.getId());
+        }
+        this.nextEntryId = maxId + 1;
 
-            // Validiere Base64-Format
-            if (!isValidBase64(cleanedContent)) {
-                throw new IllegalArgumentException("Ungültiges Base64-Format in Vault-Datei");
+        boolean assigned = false;
+        entriesById.clear();
+        for (PasswordEntry entry : passwords) {
+            if (entry.getId() <= 0 || entriesById.containsKey(entry.getId())) {
+                entry.setId(nextEntryId++);
+                assigned = true;
             }
+            entriesById.put(entry.getId(), entry);
+        }
+        return assigned;
+    }
 
-            String decryptedData = encryptionManager.decrypt(cleanedContent);
-            parsePasswordData(decryptedData);
+    /**
+     * Leitet den Schlüssel für Verfahren und Salt ab, sofern er nicht bereits vorliegt
+     * Snapshots mit denselben Parametern werden so ohne erneute, teure Ableitung geprüft.
+     */
+    private void unlock(String masterPassword, KeyDerivation derivation, byte[] salt) throws Exception {
+        if (!encryptionManager.isKeyDerivedWith(derivation, salt)) {
+            encryptionManager.deriveKeyFromPassword(masterPassword, derivation, salt);
+        }
+    }
 
-            return true;
+    /**
+     * Schreibt einen mit altem Format oder alter Schlüsselableitung geladenen Tresor
+     * mit neuem Salt und aktueller Schlüsselableitung vollständig neu
+     * Schlägt das Speichern fehl, bleibt der bisherige Schlüssel aktiv.
+     */
+    private void migrateVault(String masterPassword) throws Exception {
+        byte[] previousSalt = vaultSalt;
+        KeyDerivation previousDerivation = vaultKeyDerivation;
+        ChunkedVaultFile previousLayout = vaultLayout;
+
+        this.vaultSalt = VaultContainer.newSalt();
+        this.vaultKeyDerivation = newVaultKeyDerivation();
+        this.vaultLayout = null;
+        encryptionManager.deriveKeyFromPassword(masterPassword, vaultKeyDerivation, vaultSalt);
+
+        if (writeVault()) {
+            System.out.println("Tresor in das segmentierte Format migriert (" + vaultKeyDerivation + ")");
+            return;
+        }
 
-        } catch (Exception e) {
-            System.err.println("Fehler beim Laden des Tresors: " + e.getMessage());
-            e.printStackTrace();
+        this.vaultSalt = previousSalt;
+        this.vaultKeyDerivation = previousDerivation;
+        this.vaultLayout = previousLayout;
+        encryptionManager.deriveKeyFromPassword(masterPassword, previousDerivation, previousSalt);
+    }
 
-            // Versuche Recovery-Modus
-            return attemptVaultRecovery(vaultFile, masterPassword);
+    /**
+     * Gibt die Schlüsselableitung für neue oder migrierte Tresore zurück
+     */
+    private KeyDerivation newVaultKeyDerivation() {
+        if (configuredKeyDerivation != null) {
+            return configuredKeyDerivation;
+        }
+        return KeyDerivation.calibrate(KeyDerivation.PBKDF2_SHA256, KeyDerivation.DEFAULT_UNLOCK_MILLIS);
+    }
+
+    /**
+     * Legt die Schlüsselableitung für neu erstellte oder migrierte Tresore fest
+     * (z.B. PBKDF2 mit fester Iterationszahl oder scrypt), null für automatische Kalibrierung
+     */
+    public void setKeyDerivation(KeyDerivation keyDerivation) {
+        long stamp = acquireWriteLock();
+        try {
+            this.configuredKeyDerivation = keyDerivation;
+        } finally {
+            releaseWriteLock(stamp);
         }
     }
 
     /**
-     * Versucht eine beschädigte Vault-Datei wiederherzustellen
+     * Importiert einen Snapshot im alten Base64-Format und gibt sein Token zurück
+     * Die Datei wird als Stream gelesen, Base64-Dekodierung, Entschlüsselung und Parsen
+     * arbeiten blockweise mit festen Puffern.
+     */
+    private byte[] readLegacySnapshot(File snapshotFile) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try (DigestInputStream fileIn = new DigestInputStream(new BufferedInputStream(
+                Files.newInputStream(snapshotFile.toPath()), FILE_BUFFER_SIZE), digest)) {
+
+            if (snapshotFile.length() == 0) {
+                // Leere Datei - behandle als neuen Tresor
+                this.passwords.clear();
+            } else {
+                // Der MIME-Decoder ignoriert Zeilenumbrüche und fremde Zeichen wie früher die Bereinigung
+                InputStream plainIn = encryptionManager.decryptingStream(Base64.getMimeDecoder().wrap(fileIn));
+                parsePasswordData(plainIn);
+
+                // Bis zum Ende lesen, damit Padding-Fehler (falscher Schlüssel) erkannt werden
+                drain(plainIn);
+            }
+
+            // Restliche Bytes (z.B. abschließende Zeilenumbrüche) für das Token mitlesen
+            drain(fileIn);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Versucht eine beschädigte Vault-Datei aus dem neuesten lesbaren Snapshot wiederherzustellen
+     * Gelingt das nicht, schlägt das Laden fehl, statt einen leeren Tresor zu öffnen,
+     * der beim nächsten Speichern die Originaldatei überschreiben würde.
      */
     private boolean attemptVaultRecovery(File vaultFile, String masterPassword) {
         try {
@@ -101,92 +380,337 @@ public class VaultManager {
                 System.out.println("Backup erstellt: " + backupFile.getAbsolutePath());
             }
 
-            // Initialisiere als leeren Tresor
-            this.passwords.clear();
-
-            // Frage Benutzer ob neuer Tresor erstellt werden soll
-            System.out.println("Vault-Datei konnte nicht gelesen werden. Erstelle neuen leeren Tresor.");
+            for (File snapshot : VaultSnapshotWorker.listSnapshots(vaultFile)) {
+                try {
+                    readSnapshot(snapshot, masterPassword);
+                    // Die Aufteilung gehört zur Snapshot-Kopie, die Tresor-Datei wird vollständig neu geschrieben
+                    this.vaultLayout = null;
+                    System.out.println("Tresor aus Snapshot wiederhergestellt: " + snapshot.getAbsolutePath());
+                    return true;
+                } catch (Exception e) {
+                    System.err.println("Snapshot nicht lesbar: " + snapshot.getName() + " (" + e.getMessage() + ")");
+                }
+            }
 
-            return true;
+            System.err.println("Vault-Datei konnte nicht gelesen werden und kein Snapshot ist lesbar.");
 
         } catch (Exception e) {
             System.err.println("Recovery fehlgeschlagen: " + e.getMessage());
-            return false;
         }
+
+        // Nichts laden, damit die Originaldatei nicht überschrieben wird
+        this.passwords.clear();
+        this.passwordsView = null;
+        this.searchIndex.clear();
+        this.entriesById.clear();
+        this.currentVaultFile = null;
+        this.journal = null;
+        this.vaultSalt = null;
+        this.vaultKeyDerivation = null;
+        this.vaultLayout = null;
+        this.encryptionManager.clearKey();
+        return false;
     }
 
     /**
-     * Bereinigt Base64-Content von ungültigen Zeichen
+     * Kopiert eine Datei
      */
-    private String cleanBase64Content(String content) {
-        if (content == null) return "";
+    private void copyFile(File source, File dest) throws IOException {
+        try (FileInputStream fis = new FileInputStream(source);
+             FileOutputStream fos = new FileOutputStream(dest)) {
 
-        // Entferne alle Whitespace-Zeichen
-        String cleaned = content.replaceAll("\\s+", "");
+            byte[] buffer = new byte[1024];
+            int length;
+            while ((length = fis.read(buffer)) > 0) {
+                fos.write(buffer, 0, length);
+            }
+        }
+    }
 
-        // Entferne ungültige Base64-Zeichen (behalte nur A-Z, a-z, 0-9, +, /, =)
-        cleaned = cleaned.replaceAll("[^A-Za-z0-9+/=]", "");
+    /**
+     * Speichert den aktuellen Tresor
+     */
+    public boolean saveVault() {
+        return writeVault();
+    }
 
-        return cleaned;
+    /**
+     * Schreibt den Tresor als neuen Snapshot
+     * Unter der Schreibsperre werden nur die Einträge und die Chunk-Aufteilung festgehalten,
+     * Verschlüsseln und Schreiben laufen ohne sie. Änderungen in dieser Zeit bleiben für das
+     * nächste Speichern vermerkt, ihre Journal-Datensätze werden beim Umschalten an den neuen
+     * Snapshot gebunden. Hält der Aufrufer die Schreibsperre bereits, bleibt sie durchgehend bestehen.
+     */
+    private boolean writeVault() {
+        saveLock.lock();
+        try {
+            File vaultFile;
+            List<PasswordEntry> entries;
+            ChunkedVaultFile layout;
+            boolean incremental;
+            long journalRecords;
+            int savedChanges;
+
+            lock.writeLock().lock();
+            try {
+                if (currentVaultFile == null || !encryptionManager.hasKey()) {
+                    System.err.println("Kein Tresor geladen oder kein Schlüssel gesetzt");
+                    return false;
+                }
+
+                vaultFile = currentVaultFile;
+                entries = passwordsView != null ? passwordsView : List.copyOf(passwords);
+                passwordsView = entries;
+
+                // Nur geänderte Chunks schreiben, solange die Aufteilung der Datei bekannt ist
+                incremental = vaultLayout != null && !vaultLayout.needsRewrite();
+                if (!incremental) {
+                    // Neue Aufteilung sofort übernehmen, damit sie Änderungen während des Schreibens vermerkt
+                    vaultLayout = ChunkedVaultFile.plan(vaultKeyDerivation, vaultSalt, entries.size());
+                }
+                layout = vaultLayout.beginSave();
+                journalRecords = journal != null ? journal.getRecordCount() : 0;
+                savedChanges = unsavedChanges;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            boolean layoutReplaced = false;
+            byte[] token = null;
+            Path tempFile = null;
+
+            try {
+                if (incremental) {
+                    token = writeChangedChunks(vaultFile, layout, entries);
+                }
+                if (token == null) {
+                    if (incremental) {
+                        // Die vermerkten Änderungen beziehen sich auf die alte Datei
+                        layout = ChunkedVaultFile.plan(layout.getKeyDerivation(), layout.getSalt(), entries.size());
+                        layoutReplaced = true;
+                    }
+                    ChunkedVaultFile fullLayout = layout;
+                    tempFile = writeTempFile(vaultFile,
+                            channel -> fullLayout.writeAll(channel, encryptionManager, entries));
+                    token = layout.getToken();
+                }
+            } catch (Exception e) {
+                return saveFailed(e, null);
+            }
+
+            // Umschalten unter der Schreibsperre, damit keine Änderung zwischen altem und neuem Journal verloren geht
+            lock.writeLock().lock();
+            try {
+                if (journal != null) {
+                    journal.prepareRebase(token, journalRecords);
+                }
+                if (tempFile != null) {
+                    replaceFile(tempFile, vaultFile.getAbsoluteFile().toPath());
+                } else {
+                    activateIndex(vaultFile, layout);
+                }
+                commitJournal(token);
+
+                if (layoutReplaced) {
+                    // Die Aufteilung im Speicher beschreibt noch die alte Datei, beim nächsten Mal alles schreiben
+                    this.vaultLayout = null;
+                } else if (vaultLayout != null) {
+                    vaultLayout.saved(layout);
+                }
+                unsavedChanges -= savedChanges;
+            } catch (Exception e) {
+                return saveFailed(e, tempFile);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Kopie für den Snapshot-Ring wird im Hintergrund erstellt
+            snapshotWorker.scheduleSnapshot(vaultFile);
+
+            System.out.println("Vault erfolgreich gespeichert: " + vaultFile.getAbsolutePath());
+            return true;
+        } finally {
+            saveLock.unlock();
+        }
     }
 
     /**
-     * Überprüft ob ein String gültiges Base64-Format hat
+     * Bindet das Journal an den gerade gültig gewordenen Snapshot
+     * Schlägt das fehl, wird das Journal geleert und der Tresor erneut gespeichert, denn
+     * neue Datensätze im alten Journal würden beim nächsten Laden ignoriert.
      */
-    private boolean isValidBase64(String content) {
-        if (content == null || content.isEmpty()) return false;
+    private void commitJournal(byte[] token) {
+        if (journal == null) {
+            return;
+        }
 
-        // Base64-String sollte nur gültige Zeichen enthalten
-        if (!content.matches("^[A-Za-z0-9+/]*={0,2}$")) {
-            return false;
+        long pendingRecords = journal.getRecordCount();
+        try {
+            journal.commitRebase();
+        } catch (IOException e) {
+            System.err.println("Journal konnte nicht umgestellt werden: " + e.getMessage());
+            journal.reset(token);
+            unsavedChanges += (int) pendingRecords;
+            scheduleSave(0);
         }
+    }
 
-        // Länge sollte ein Vielfaches von 4 sein
-        return content.length() % 4 == 0;
+    /**
+     * Räumt nach einem fehlgeschlagenen Speichern auf, der bisherige Snapshot bleibt gültig
+     */
+    private boolean saveFailed(Exception e, Path tempFile) {
+        System.err.println("Fehler beim Speichern des Tresors: " + e.getMessage());
+        e.printStackTrace();
+
+        if (tempFile != null) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException deleteError) {
+                System.err.println("Temporäre Datei konnte nicht gelöscht werden: " + tempFile);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Welche Chunks seit dem Festhalten gespeichert sind, ist unklar: beim nächsten Mal alles schreiben
+            this.vaultLayout = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return false;
     }
 
     /**
-     * Kopiert eine Datei
+     * Speichert den Tresor im Hintergrund
+     * Ein bereits geplantes, noch nicht begonnenes Speichern wird vorgezogen und
+     * übernimmt diesen Aufruf mit, das Ergebnis meldet das gemeinsame Future.
      */
-    private void copyFile(File source, File dest) throws IOException {
-        try (FileInputStream fis = new FileInputStream(source);
-             FileOutputStream fos = new FileOutputStream(dest)) {
+    public CompletableFuture<Boolean> saveVaultAsync() {
+        return scheduleSave(0);
+    }
 
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = fis.read(buffer)) > 0) {
-                fos.write(buffer, 0, length);
+    /**
+     * Schaltet verzögertes Speichern ein (Verzögerung in Millisekunden) oder mit 0 aus
+     * Änderungen stehen weiterhin sofort im Journal, nach Ablauf der Verzögerung werden
+     * sie gemeinsam in die Chunks geschrieben. Das Ergebnis liefert {@link #getPendingSave()}.
+     */
+    public void setWriteBehindDelay(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Verzögerung darf nicht negativ sein");
+        }
+        this.writeBehindMillis = millis;
+        synchronized (saveMonitor) {
+            // Gesammelte Änderungen nicht bis zum Ablauf der alten Verzögerung liegen lassen
+            if (millis == 0 && scheduledSave != null) {
+                scheduleSave(0);
             }
         }
     }
 
+    public long getWriteBehindDelay() {
+        return writeBehindMillis;
+    }
+
     /**
-     * Speichert den aktuellen Tresor
+     * Liefert das geplante, noch nicht begonnene Speichern im Hintergrund oder null
+     * Das Future meldet, ob die gesammelten Änderungen in die Chunks geschrieben wurden.
      */
-    public boolean saveVault() {
-        if (currentVaultFile == null || !encryptionManager.hasKey()) {
-            System.err.println("Kein Tresor geladen oder kein Schlüssel gesetzt");
-            return false;
+    public CompletableFuture<Boolean> getPendingSave() {
+        synchronized (saveMonitor) {
+            return scheduledSave;
+        }
+    }
+
+    /**
+     * Plant ein Speichern ein oder schließt sich einem noch nicht begonnenen an
+     * Die Verzögerung zählt ab der ersten Änderung, spätere Änderungen verlängern sie nicht.
+     */
+    private CompletableFuture<Boolean> scheduleSave(long delayMillis) {
+        synchronized (saveMonitor) {
+            if (scheduledSave != null) {
+                if (delayMillis == 0 && scheduledSaveTask.cancel(false)) {
+                    scheduledSaveTask = saveExecutor.schedule(this::runScheduledSave, 0, TimeUnit.MILLISECONDS);
+                }
+                return scheduledSave;
+            }
+
+            scheduledSave = new CompletableFuture<>();
+            scheduledSaveTask = saveExecutor.schedule(this::runScheduledSave, delayMillis, TimeUnit.MILLISECONDS);
+            return scheduledSave;
         }
+    }
 
+    private void runScheduledSave() {
+        // Die Speichersperre hält Schließen und Öffnen bis nach dem Speichern auf
+        saveLock.lock();
         try {
-            String serializedData = serializePasswordData();
-            String encryptedData = encryptionManager.encrypt(serializedData);
+            CompletableFuture<Boolean> future = takeScheduledSave();
+            if (future == null) {
+                // Schließen oder Wechseln hat das Speichern bereits übernommen
+                return;
+            }
 
-            // Validiere das verschlüsselte Ergebnis
-            if (!isValidBase64(encryptedData)) {
-                throw new IllegalStateException("Verschlüsselung erzeugte ungültiges Base64");
+            try {
+                future.complete(writeVault());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
             }
+        } finally {
+            saveLock.unlock();
+        }
+    }
 
-            writeFileContent(currentVaultFile, encryptedData);
+    /**
+     * Nimmt das geplante Speichern an sich, ab hier planen neue Änderungen ein eigenes ein
+     */
+    private CompletableFuture<Boolean> takeScheduledSave() {
+        synchronized (saveMonitor) {
+            CompletableFuture<Boolean> future = scheduledSave;
+            if (future != null) {
+                scheduledSaveTask.cancel(false);
+            }
+            scheduledSave = null;
+            scheduledSaveTask = null;
+            return future;
+        }
+    }
 
-            System.out.println("Vault erfolgreich gespeichert: " + currentVaultFile.getAbsolutePath());
-            return true;
+    /**
+     * Schreibt ausstehende Änderungen, bevor der Tresor geschlossen oder gewechselt wird
+     * Ein geplantes Speichern wird dabei vorgezogen und erhält dasselbe Ergebnis.
+     */
+    private boolean writeUnsavedChanges() {
+        CompletableFuture<Boolean> pending = takeScheduledSave();
+        boolean saved = true;
+        if ((unsavedChanges > 0 || pending != null) && currentVaultFile != null) {
+            saved = writeVault();
+        }
+        if (pending != null) {
+            pending.complete(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Hängt die geänderten Chunks und einen neuen Index an die bestehende Tresor-Datei an
+     * Gültig wird der Index erst mit {@link #activateIndex}. Gibt null zurück, wenn das
+     * nicht gelingt und vollständig gespeichert werden muss.
+     */
+    private byte[] writeChangedChunks(File vaultFile, ChunkedVaultFile layout, List<PasswordEntry> entries) {
+        try (FileChannel channel = FileChannel.open(vaultFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return layout.update(channel, encryptionManager, entries);
 
         } catch (Exception e) {
-            System.err.println("Fehler beim Speichern des Tresors: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            System.err.println("Inkrementelles Speichern fehlgeschlagen, Tresor wird vollständig geschrieben: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    private void activateIndex(File vaultFile, ChunkedVaultFile layout) throws IOException {
+        try (FileChannel channel = FileChannel.open(vaultFile.toPath(), StandardOpenOption.WRITE)) {
+            layout.activateIndex(channel);
         }
     }
 
@@ -196,122 +720,296 @@ public class VaultManager {
     public boolean addPassword(PasswordEntry entry) {
         if (entry == null) return false;
 
-        passwords.add(entry);
-        return saveVault();
+        boolean recorded;
+        long stamp = acquireWriteLock();
+        try {
+            if (entry.getId() > 0 && entriesById.get(entry.getId()) == entry) {
+                System.err.println("Eintrag ist bereits im Tresor: " + entry.getId());
+                return false;
+            }
+            if (entry.getId() <= 0 || entriesById.containsKey(entry.getId())) {
+                entry.setId(nextEntryId++);
+            } else {
+                nextEntryId = Math.max(nextEntryId, entry.getId() + 1);
+            }
+            entriesById.put(entry.getId(), entry);
+            passwords.add(entry);
+            passwordsView = null;
+            searchIndex.add(entry);
+            if (vaultLayout != null) vaultLayout.entryInserted(passwords.size() - 1);
+            recorded = recordChange(VaultJournal.OP_ADD, passwords.size() - 1, entry);
+        } finally {
+            releaseWriteLock(stamp);
+        }
+        return recorded || writeVault();
     }
 
     /**
      * Entfernt ein Passwort aus dem Tresor
      */
     public boolean removePassword(PasswordEntry entry) {
-        if (passwords.remove(entry)) {
-            return saveVault();
-        }
-        return false;
+        return entry != null && removePasswordById(entry.getId());
     }
 
     /**
-     * Entfernt ein Passwort anhand des Index
+     * Entfernt ein Passwort anhand seiner ID
      */
-    public boolean removePassword(int index) {
-        if (index >= 0 && index < passwords.size()) {
+    public boolean removePasswordById(long id) {
+        boolean recorded;
+        long stamp = acquireWriteLock();
+        try {
+            PasswordEntry entry = entriesById.remove(id);
+            if (entry == null) {
+                return false;
+            }
+
+            // Position für Journal und Chunks, Vergleich nur über Referenzen
+            int index = passwords.indexOf(entry);
             passwords.remove(index);
-            return saveVault();
+            passwordsView = null;
+            searchIndex.remove(entry);
+            if (vaultLayout != null) vaultLayout.entryRemoved(index);
+            recorded = recordChange(VaultJournal.OP_REMOVE, index, null);
+        } finally {
+            releaseWriteLock(stamp);
         }
-        return false;
+        return recorded || writeVault();
     }
 
     /**
-     * Aktualisiert ein existierendes Passwort
+     * Ersetzt das Passwort mit der angegebenen ID, der neue Eintrag übernimmt die ID
+     * Ein Eintrag, der bereits eine andere ID trägt, gehört zu einem anderen Eintrag des
+     * Tresors oder eines anderen Tresors und wird abgelehnt, statt ihn umzunummerieren.
      */
-    public boolean updatePassword(int index, PasswordEntry updatedEntry) {
-        if (index >= 0 && index < passwords.size() && updatedEntry != null) {
+    public boolean updatePasswordById(long id, PasswordEntry updatedEntry) {
+        boolean recorded;
+        long stamp = acquireWriteLock();
+        try {
+            PasswordEntry currentEntry = entriesById.get(id);
+            if (currentEntry == null || updatedEntry == null) {
+                return false;
+            }
+            if (updatedEntry.getId() > 0 && updatedEntry.getId() != id) {
+                System.err.println("Eintrag hat bereits die ID " + updatedEntry.getId() + ", erwartet " + id);
+                return false;
+            }
+
+            int index = passwords.indexOf(currentEntry);
+            updatedEntry.setId(id);
             passwords.set(index, updatedEntry);
-            return saveVault();
+            passwordsView = null;
+            entriesById.put(id, updatedEntry);
+            searchIndex.replace(currentEntry, updatedEntry);
+            if (vaultLayout != null) vaultLayout.entryUpdated(index);
+            recorded = recordChange(VaultJournal.OP_UPDATE, index, updatedEntry);
+        } finally {
+            releaseWriteLock(stamp);
         }
-        return false;
+        return recorded || writeVault();
     }
 
     /**
-     * Gibt alle Passwörter zurück
+     * Gibt das Passwort mit der angegebenen ID zurück, null wenn es nicht (mehr) existiert
+     */
+    public PasswordEntry getPassword(long id) {
+        lock.readLock().lock();
+        try {
+            return entriesById.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gibt alle Passwörter als unveränderliche Momentaufnahme zurück
+     * Die Momentaufnahme wird nach einer Änderung einmal erstellt und danach von allen
+     * Lesern geteilt, statt bei jedem Aufruf die Liste zu kopieren. Spätere Änderungen
+     * am Tresor wirken sich nicht auf eine bereits geholte Liste aus.
      */
     public List<PasswordEntry> getAllPasswords() {
-        return new ArrayList<>(passwords);
+        List<PasswordEntry> view = passwordsView;
+        if (view != null) {
+            return view;
+        }
+
+        // Mehrere Leser können gleichzeitig eine gleiche Momentaufnahme erstellen, das ist unschädlich
+        lock.readLock().lock();
+        try {
+            view = List.copyOf(passwords);
+            passwordsView = view;
+            return view;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Sucht nach Passwörtern anhand eines Suchbegriffs
+     * Jeder durch Leerzeichen getrennte Teil muss in Titel, Benutzername oder Website
+     * enthalten sein (ohne Beachtung der Groß-/Kleinschreibung). Die Kandidaten werden
+     * über den Trigramm-Index bestimmt statt alle Einträge zu vergleichen.
      */
     public List<PasswordEntry> searchPasswords(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAllPasswords();
         }
 
-        String term = searchTerm.toLowerCase().trim();
-        List<PasswordEntry> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            return searchIndex.search(searchTerm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        for (PasswordEntry entry : passwords) {
-            if (entry.getTitle().toLowerCase().contains(term) ||
-                    entry.getUsername().toLowerCase().contains(term) ||
-                    entry.getWebsite().toLowerCase().contains(term)) {
-                results.add(entry);
-            }
+    /**
+     * Vorschläge für das Suchfeld: Titel und Domains, die mit der Eingabe beginnen
+     */
+    public List<String> completeSearch(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            return searchIndex.complete(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unscharfe Suche, die Tippfehler toleriert und die relevantesten Einträge zuerst liefert
+     */
+    public List<PasswordEntry> searchPasswordsFuzzy(String searchTerm, int limit) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return new ArrayList<>();
         }
 
-        return results;
+        lock.readLock().lock();
+        try {
+            return searchIndex.searchFuzzy(searchTerm, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Schließt den aktuellen Tresor
+     * Gibt false zurück und lässt den Tresor geöffnet, wenn ausstehende Änderungen nicht
+     * geschrieben werden konnten.
      */
-    public void closeVault() {
-        this.currentVaultFile = null;
-        this.passwords.clear();
-        this.encryptionManager.clearKey();
+    public boolean closeVault() {
+        saveLock.lock();
+        long stamp = acquireWriteLock();
+        try {
+            if (!writeUnsavedChanges()) {
+                System.err.println("Tresor bleibt geöffnet, ausstehende Änderungen wurden nicht geschrieben");
+                return false;
+            }
+            this.unsavedChanges = 0;
+            this.currentVaultFile = null;
+            this.journal = null;
+            this.vaultSalt = null;
+            this.vaultKeyDerivation = null;
+            this.vaultLayout = null;
+            this.passwords.clear();
+            this.passwordsView = null;
+            this.searchIndex.clear();
+            this.entriesById.clear();
+            this.encryptionManager.clearKey();
+            return true;
+        } finally {
+            releaseWriteLock(stamp);
+            saveLock.unlock();
+        }
     }
 
     /**
      * Überprüft ob ein Tresor geladen ist
      */
     public boolean isVaultLoaded() {
-        return currentVaultFile != null && encryptionManager.hasKey();
+        long stamp = versionLock.tryOptimisticRead();
+        boolean loaded = currentVaultFile != null;
+        if (!versionLock.validate(stamp)) {
+            lock.readLock().lock();
+            try {
+                loaded = currentVaultFile != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return loaded && encryptionManager.hasKey();
     }
 
     /**
      * Gibt den Namen der aktuellen Tresor-Datei zurück
      */
     public String getCurrentVaultName() {
-        return currentVaultFile != null ? currentVaultFile.getName() : null;
+        long stamp = versionLock.tryOptimisticRead();
+        File vaultFile = currentVaultFile;
+        if (!versionLock.validate(stamp)) {
+            lock.readLock().lock();
+            try {
+                vaultFile = currentVaultFile;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return vaultFile != null ? vaultFile.getName() : null;
     }
 
     /**
      * Gibt die Anzahl der gespeicherten Passwörter zurück
      */
     public int getPasswordCount() {
-        return passwords.size();
+        // Optimistisch ohne Sperre lesen, nur bei gleichzeitiger Änderung mit Lesesperre wiederholen
+        long stamp = versionLock.tryOptimisticRead();
+        int count = passwords.size();
+        if (!versionLock.validate(stamp)) {
+            lock.readLock().lock();
+            try {
+                count = passwords.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return count;
     }
 
     /**
-     * Serialisiert die Passwort-Daten in einen String
+     * Parst Passwort-Daten im Binärformat oder im alten Textformat aus einem Stream
      */
-    private String serializePasswordData() {
-        StringBuilder sb = new StringBuilder();
+    private void parsePasswordData(InputStream in) throws IOException {
+        passwords.clear();
 
-        for (PasswordEntry entry : passwords) {
-            sb.append(escapeString(entry.getTitle())).append("|")
-                    .append(escapeString(entry.getUsername())).append("|")
-                    .append(escapeString(entry.getPassword())).append("|")
-                    .append(escapeString(entry.getWebsite())).append("|")
-                    .append(entry.getCreated().getTime()).append("\n");
+        // Die ersten Bytes entscheiden über das Format
+        PushbackInputStream pushbackIn = new PushbackInputStream(in, VaultCodec.MAGIC_LENGTH);
+        byte[] head = pushbackIn.readNBytes(VaultCodec.MAGIC_LENGTH);
+        pushbackIn.unread(head);
+
+        if (!VaultCodec.isBinaryFormat(head)) {
+            // Altes Textformat: vollständig lesen, solche Tresore sind klein
+            byte[] data = pushbackIn.readAllBytes();
+            parseLegacyPasswordData(new String(data, StandardCharsets.UTF_8));
+            if (passwords.isEmpty() && data.length > 0) {
+                throw new IOException("Entschlüsselte Daten sind ungültig (falsches Master-Passwort?)");
+            }
+            this.legacyFormatLoaded = true;
+            return;
         }
 
-        return sb.toString();
+        VaultCodec.Decoder decoder = new VaultCodec.Decoder(pushbackIn);
+        PasswordEntry entry;
+        while ((entry = decoder.readEntry()) != null) {
+            passwords.add(entry);
+        }
     }
 
     /**
-     * Parst Passwort-Daten aus einem String
+     * Parst Passwort-Daten aus dem alten, zeilenbasierten Textformat
      */
-    private void parsePasswordData(String data) {
+    private void parseLegacyPasswordData(String data) {
         passwords.clear();
 
         if (data == null || data.trim().isEmpty()) {
@@ -323,66 +1021,209 @@ public class VaultManager {
         for (String line : lines) {
             if (line.trim().isEmpty()) continue;
 
-            String[] parts = line.split("\\|");
-            if (parts.length >= 5) {
-                try {
-                    PasswordEntry entry = new PasswordEntry();
-                    entry.setTitle(unescapeString(parts[0]));
-                    entry.setUsername(unescapeString(parts[1]));
-                    entry.setPassword(unescapeString(parts[2]));
-                    entry.setWebsite(unescapeString(parts[3]));
-                    entry.setCreated(new Date(Long.parseLong(parts[4])));
+            try {
+                PasswordEntry entry = parseEntryLine(line);
+                if (entry != null) {
                     passwords.add(entry);
-                } catch (Exception e) {
-                    System.err.println("Fehler beim Parsen einer Passwort-Zeile: " + e.getMessage());
-                    // Überspringe beschädigte Einträge
                 }
+            } catch (Exception e) {
+                System.err.println("Fehler beim Parsen einer Passwort-Zeile: " + e.getMessage());
+                // Überspringe beschädigte Einträge
             }
         }
     }
 
     /**
-     * Liest den Inhalt einer Datei
+     * Parst einen einzelnen Eintrag aus einer Zeile des alten Textformats,
+     * null wenn die Zeile unvollständig ist
      */
-    private String readFileContent(File file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
-            StringBuilder content = new StringBuilder();
-            String line;
+    private PasswordEntry parseEntryLine(String line) {
+        List<String> parts = splitLegacyLine(line);
+        if (parts.size() < 5) {
+            return null;
+        }
+
+        PasswordEntry entry = new PasswordEntry();
+        entry.setTitle(parts.get(0));
+        entry.setUsername(parts.get(1));
+        entry.setPassword(parts.get(2));
+        entry.setWebsite(parts.get(3));
+        entry.setCreated(new Date(Long.parseLong(parts.get(4).trim())));
+        return entry;
+    }
 
-            while ((line = reader.readLine()) != null) {
-                content.append(line);
-                // Keine Zeilenumbrüche hinzufügen für Base64-Content
+    /**
+     * Zerlegt eine Zeile des alten Textformats an nicht maskierten Trennzeichen
+     * und hebt die Maskierung von "\|" und "\n" in einem Durchlauf auf
+     */
+    private List<String> splitLegacyLine(String line) {
+        List<String> parts = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(i + 1);
+                if (next == '|') {
+                    field.append('|');
+                    i++;
+                    continue;
+                }
+                if (next == 'n') {
+                    field.append('\n');
+                    i++;
+                    continue;
+                }
             }
+            if (c == '|') {
+                parts.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        parts.add(field.toString());
 
-            return content.toString();
+        return parts;
+    }
+
+    /**
+     * Schreibt eine einzelne Änderung ins Journal statt den ganzen Tresor neu zu speichern
+     * Gibt false zurück, wenn stattdessen ein vollständiger Snapshot geschrieben werden muss,
+     * weil das Journal zu lang wird oder nicht geschrieben werden kann. Das übernimmt der
+     * Aufrufer nach dem Freigeben der Schreibsperre. Mit verzögertem Speichern wird das
+     * Schreiben der Chunks zusätzlich im Hintergrund eingeplant.
+     */
+    private boolean recordChange(byte operation, int index, PasswordEntry entry) {
+        long delay = writeBehindMillis;
+        if (journal == null || !encryptionManager.hasKey()
+                || (delay == 0 && journal.getRecordCount() >= JOURNAL_COMPACTION_THRESHOLD)) {
+            return false;
+        }
+
+        try {
+            byte[] payload = entry != null ? VaultCodec.encodeEntry(entry) : new byte[0];
+            journal.append(operation, index, payload);
+
+        } catch (Exception e) {
+            System.err.println("Fehler beim Schreiben des Journals: " + e.getMessage());
+            return false;
+        }
+
+        if (delay > 0) {
+            scheduleSave(delay);
         }
+        return true;
     }
 
     /**
-     * Schreibt Inhalt in eine Datei
+     * Wendet die Journal-Einträge in ihrer Reihenfolge auf die geladenen Passwörter an
      */
-    private void writeFileContent(File file, String content) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
-            writer.write(content);
+    private void replayJournal(byte[] token) throws Exception {
+        List<VaultJournal.Record> records = journal.readRecords(token);
+
+        for (VaultJournal.Record record : records) {
+            try {
+                applyJournalRecord(record);
+            } catch (Exception e) {
+                System.err.println("Fehler beim Anwenden eines Journal-Eintrags: " + e.getMessage());
+                // Überspringe beschädigte Einträge
+            }
+        }
+
+        if (!records.isEmpty()) {
+            System.out.println(records.size() + " Journal-Einträge angewendet");
         }
     }
 
     /**
-     * Escaped spezielle Zeichen in Strings für die Serialisierung
+     * Wendet einen einzelnen Journal-Eintrag an
      */
-    private String escapeString(String input) {
-        if (input == null) return "";
-        return input.replace("|", "\\|").replace("\n", "\\n");
+    private void applyJournalRecord(VaultJournal.Record record) throws IOException {
+        switch (record.operation) {
+            case VaultJournal.OP_ADD:
+                PasswordEntry added = decodeJournalEntry(record.payload);
+                if (added != null && record.index >= 0 && record.index <= passwords.size()) {
+                    passwords.add(record.index, added);
+                    if (vaultLayout != null) vaultLayout.entryInserted(record.index);
+                }
+                break;
+            case VaultJournal.OP_REMOVE:
+                if (record.index >= 0 && record.index < passwords.size()) {
+                    passwords.remove(record.index);
+                    if (vaultLayout != null) vaultLayout.entryRemoved(record.index);
+                }
+                break;
+            case VaultJournal.OP_UPDATE:
+                PasswordEntry updated = decodeJournalEntry(record.payload);
+                if (updated != null && record.index >= 0 && record.index < passwords.size()) {
+                    passwords.set(record.index, updated);
+                    if (vaultLayout != null) vaultLayout.entryUpdated(record.index);
+                }
+                break;
+            default:
+                System.err.println("Unbekannte Journal-Operation: " + record.operation);
+        }
     }
 
     /**
-     * Unescaped spezielle Zeichen nach der Deserialisierung
+     * Dekodiert den Eintrag eines Journal-Datensatzes (binär oder altes Textformat)
      */
-    private String unescapeString(String input) {
-        if (input == null) return "";
-        return input.replace("\\|", "|").replace("\\n", "\n");
+    private PasswordEntry decodeJournalEntry(byte[] payload) throws IOException {
+        if (VaultCodec.isBinaryFormat(payload)) {
+            return VaultCodec.decodeEntry(payload);
+        }
+        return parseEntryLine(new String(payload, StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Liest einen Stream bis zum Ende
+     */
+    private void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[FILE_BUFFER_SIZE];
+        while (in.read(buffer) != -1) {
+            // nur lesen
+        }
+    }
+
+    /**
+     * Schreibt den Inhalt eines Tresors in einen Dateikanal
+     */
+    private interface ContentWriter {
+        void write(FileChannel channel) throws Exception;
+    }
+
+    /**
+     * Schreibt Inhalt in eine temporäre Datei im selben Verzeichnis wie die Zieldatei
+     * Die Datei wird auf den Datenträger synchronisiert und danach mit {@link #replaceFile}
+     * atomar über die Zieldatei umbenannt. Bei einem Absturz bleibt so immer entweder die
+     * alte oder die neue Version erhalten.
+     */
+    private Path writeTempFile(File file, ContentWriter writer) throws Exception {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writer.write(channel);
+            channel.force(true);
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Ersetzt die Zieldatei atomar, falls das Dateisystem es unterstützt
+     * Einblendungen der Zieldatei sind zu diesem Zeitpunkt bereits freigegeben (siehe VaultContainer#unmap).
+     */
+    private void replaceFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     /**
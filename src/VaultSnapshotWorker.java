@@ -0,0 +1,115 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hält im Hintergrund einen begrenzten Ring älterer verschlüsselter Tresor-Snapshots
+ * Nach jedem erfolgreichen Speichern wird die neue Tresor-Datei in das Verzeichnis
+ * {@code <tresor>.snapshots} kopiert und die ältesten Kopien werden entfernt.
+ * Der speichernde Thread wartet dabei nie auf die Kopie.
+ */
+public class VaultSnapshotWorker {
+    public static final int DEFAULT_MAX_SNAPSHOTS = 5;
+
+    private static final String SNAPSHOT_SUFFIX = ".vault";
+
+    private final int maxSnapshots;
+    private final ExecutorService executor;
+    private final Set<String> pendingVaults = ConcurrentHashMap.newKeySet();
+
+    public VaultSnapshotWorker() {
+        this(DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    public VaultSnapshotWorker(int maxSnapshots) {
+        if (maxSnapshots < 1) {
+            throw new IllegalArgumentException("Mindestens ein Snapshot muss behalten werden");
+        }
+        this.maxSnapshots = maxSnapshots;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vault-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Plant einen Snapshot der gerade gespeicherten Tresor-Datei ein
+     * Mehrere Speichervorgänge vor Beginn der Kopie werden zu einem Snapshot zusammengefasst.
+     */
+    public void scheduleSnapshot(File vaultFile) {
+        String key = vaultFile.getAbsolutePath();
+        if (!pendingVaults.add(key)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            pendingVaults.remove(key);
+            try {
+                createSnapshot(vaultFile);
+                pruneSnapshots(vaultFile);
+            } catch (Exception e) {
+                System.err.println("Snapshot konnte nicht erstellt werden: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Gibt die vorhandenen Snapshots eines Tresors zurück, den neuesten zuerst
+     */
+    public static File[] listSnapshots(File vaultFile) {
+        File[] snapshots = snapshotDirectory(vaultFile).listFiles(
+                (dir, name) -> name.endsWith(SNAPSHOT_SUFFIX));
+        if (snapshots == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(snapshots, Comparator.comparing(File::getName).reversed());
+        return snapshots;
+    }
+
+    private static File snapshotDirectory(File vaultFile) {
+        return new File(vaultFile.getAbsolutePath() + ".snapshots");
+    }
+
+    private void createSnapshot(File vaultFile) throws IOException {
+        File directory = snapshotDirectory(vaultFile);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Snapshot-Verzeichnis konnte nicht erstellt werden: " + directory);
+        }
+
+        // Zeitstempel mit fester Breite, damit die Namen chronologisch sortierbar sind
+        String name = String.format("%019d%s", System.currentTimeMillis(), SNAPSHOT_SUFFIX);
+        Path target = new File(directory, name).toPath();
+        Path temp = new File(directory, name + ".tmp").toPath();
+
+        try (FileChannel source = FileChannel.open(vaultFile.toPath(), StandardOpenOption.READ);
+             FileChannel sink = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, sink);
+            }
+            sink.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void pruneSnapshots(File vaultFile) {
+        File[] snapshots = listSnapshots(vaultFile);
+        for (int i = maxSnapshots; i < snapshots.length; i++) {
+            if (!snapshots[i].delete()) {
+                System.err.println("Alter Snapshot konnte nicht gelöscht werden: " + snapshots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BK-Baum über Wörter für die Suche nach ähnlichen Wörtern (Levenshtein-Distanz)
+ *
+ * Jeder Knoten speichert seine Kinder nach deren Distanz zum Knotenwort. Wegen der
+ * Dreiecksungleichung müssen bei einer Suche mit Höchstdistanz {@code k} nur Kinder mit
+ * Kantendistanz im Bereich {@code d - k .. d + k} besucht werden, sodass für kleine
+ * {@code k} nur ein Bruchteil der Wörter verglichen wird.
+ * Die Knoten liegen in parallelen Arrays statt in einzelnen Objekten.
+ * Suchen verändern den Baum nicht und dürfen parallel laufen, solange nicht gleichzeitig
+ * Wörter hinzugefügt werden.
+ */
+public class WordBkTree {
+    private String[] words = new String[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int[] edgeDistance = new int[64];
+    private int size;
+
+    // Wiederverwendet beim Hinzufügen, jede Suche verwendet eine eigene Instanz
+    private final Distance insertDistance = new Distance();
+
+    /**
+     * Ein gefundenes Wort mit seiner Distanz zur Anfrage
+     */
+    public static class Match {
+        public final String word;
+        public final int distance;
+
+        Match(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Fügt ein Wort hinzu, bereits enthaltene Wörter werden ignoriert
+     */
+    public void add(String word) {
+        if (size == 0) {
+            newNode(word, 0);
+            return;
+        }
+
+        insertDistance.usePattern(word);
+        int node = 0;
+        while (true) {
+            int distance = insertDistance.to(words[node]);
+            if (distance == 0) {
+                return;
+            }
+
+            int child = firstChild[node];
+            while (child >= 0 && edgeDistance[child] != distance) {
+                child = nextSibling[child];
+            }
+            if (child < 0) {
+                int created = newNode(word, distance);
+                nextSibling[created] = firstChild[node];
+                firstChild[node] = created;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Sucht alle Wörter mit höchstens der angegebenen Distanz zur Anfrage
+     */
+    public List<Match> search(String query, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (size == 0) {
+            return matches;
+        }
+
+        int[] stack = new int[16];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        Distance queryDistance = new Distance();
+        queryDistance.usePattern(query);
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            int distance = queryDistance.to(words[node]);
+            if (distance <= maxDistance) {
+                matches.add(new Match(words[node], distance));
+            }
+
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edgeDistance[child] - distance) <= maxDistance) {
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private int newNode(String word, int distance) {
+        if (size == words.length) {
+            int capacity = size * 2;
+            words = Arrays.copyOf(words, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+        }
+        words[size] = word;
+        firstChild[size] = -1;
+        nextSibling[size] = -1;
+        edgeDistance[size] = distance;
+        return size++;
+    }
+
+    /**
+     * Levenshtein-Distanz von einem festen Musterwort zu beliebigen Texten
+     */
+    private static class Distance {
+        // Bitmasken des Musterwortes je Zeichen für die bitparallele Distanz
+        private final long[] asciiMasks = new long[128];
+        private char[] otherChars = new char[8];
+        private long[] otherMasks = new long[8];
+        private int otherCount;
+        private String pattern;
+
+        // Wiederverwendete Zeilen für die Distanzberechnung langer Wörter
+        private int[] previousRow = new int[32];
+        private int[] currentRow = new int[32];
+
+        /**
+         * Legt das Wort fest, zu dem {@link #to(String)} die Distanz berechnet
+         */
+        void usePattern(String word) {
+            if (pattern != null && pattern.length() <= 64) {
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c < 128) {
+                        asciiMasks[c] = 0;
+                    }
+                }
+            }
+            otherCount = 0;
+            pattern = word;
+
+            if (word.length() <= 64) {
+                for (int i = 0; i < word.length(); i++) {
+                    char c = word.charAt(i);
+                    if (c < 128) {
+                        asciiMasks[c] |= 1L << i;
+                    } else {
+                        addOtherMask(c, 1L << i);
+                    }
+                }
+            }
+        }
+
+        private void addOtherMask(char c, long bit) {
+            for (int i = 0; i < otherCount; i++) {
+                if (otherChars[i] == c) {
+                    otherMasks[i] |= bit;
+                    return;
+                }
+            }
+            if (otherCount == otherChars.length) {
+                otherChars = Arrays.copyOf(otherChars, otherCount * 2);
+                otherMasks = Arrays.copyOf(otherMasks, otherCount * 2);
+            }
+            otherChars[otherCount] = c;
+            otherMasks[otherCount++] = bit;
+        }
+
+        private long maskOf(char c) {
+            if (c < 128) {
+                return asciiMasks[c];
+            }
+            for (int i = 0; i < otherCount; i++) {
+                if (otherChars[i] == c) {
+                    return otherMasks[i];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Levenshtein-Distanz zwischen Musterwort und Text
+         * Für Musterwörter bis 64 Zeichen bitparallel nach Myers, eine Spalte der Tabelle
+         * pro Textzeichen in wenigen Operationen. Die Distanz wird immer exakt berechnet,
+         * da das Beschneiden der Kinder sie voraussetzt.
+         */
+        int to(String text) {
+            int m = pattern.length();
+            if (m > 64) {
+                return distance(pattern, text);
+            }
+            if (m == 0) {
+                return text.length();
+            }
+
+            long last = 1L << (m - 1);
+            long positive = -1L;
+            long negative = 0;
+            int score = m;
+            for (int i = 0; i < text.length(); i++) {
+                long equal = maskOf(text.charAt(i));
+                long vertical = equal | negative;
+                long horizontal = (((equal & positive) + positive) ^ positive) | equal;
+                long horizontalPositive = negative | ~(horizontal | positive);
+                long horizontalNegative = positive & horizontal;
+                if ((horizontalPositive & last) != 0) {
+                    score++;
+                } else if ((horizontalNegative & last) != 0) {
+                    score--;
+                }
+                horizontalPositive = (horizontalPositive << 1) | 1;
+                horizontalNegative <<= 1;
+                positive = horizontalNegative | ~(vertical | horizontalPositive);
+                negative = horizontalPositive & vertical;
+            }
+            return score;
+        }
+
+        /**
+         * Levenshtein-Distanz mit zwei wiederverwendeten Zeilen
+         */
+        private int distance(String a, String b) {
+            if (previousRow.length <= b.length()) {
+                previousRow = new int[b.length() + 1];
+                currentRow = new int[b.length() + 1];
+            }
+            int[] previous = previousRow;
+            int[] current = currentRow;
+
+            for (int j = 0; j <= b.length(); j++) {
+                previous[j] = j;
+            }
+
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                char ca = a.charAt(i - 1);
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[b.length()];
+        }
+    }
+}